@@ -29,14 +29,81 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nonnull;
+import net.jcip.annotations.GuardedBy;
 import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.Validate;
 
 /**
- * Helper to identify methods that have not been implemented / overridden.
+ * Helper to identify methods that have not been implemented / overridden. The answers are cached per class as they
+ * are consulted on every fetch and a class cannot change once loaded.
  */
 class MethodUtils {
+    /**
+     * Lock to guard access to {@link #cache}.
+     */
+    private static final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Weak hashmap of the answers for each class (and thus weak on the class loader, so that reloading a plugin does
+     * not leak its classes), keyed by a string describing the question so that the cached values never hold a
+     * strong reference to a class.
+     */
+    @GuardedBy("lock")
+    private static final Map<Class<?>, Map<String, Boolean>> cache = new WeakHashMap<Class<?>, Map<String, Boolean>>();
+
+    /**
+     * Returns the cached answers for a class.
+     *
+     * @param clazz the class.
+     * @return the cached answers.
+     */
+    private static Map<String, Boolean> cacheFor(Class<?> clazz) {
+        lock.readLock().lock();
+        try {
+            Map<String, Boolean> result = cache.get(clazz);
+            if (result != null) {
+                return result;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            Map<String, Boolean> result = cache.get(clazz);
+            if (result == null) {
+                result = new ConcurrentHashMap<String, Boolean>();
+                cache.put(clazz, result);
+            }
+            return result;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Describes a method signature for use as a cache key.
+     *
+     * @param prefix         the question being asked.
+     * @param methodName     the method name.
+     * @param parameterTypes the parameter types.
+     * @return the cache key.
+     */
+    private static String keyOf(String prefix, String methodName, Class<?>... parameterTypes) {
+        StringBuilder key = new StringBuilder(prefix).append('#').append(methodName).append('(');
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(parameterTypes[i].getName());
+        }
+        return key.append(')').toString();
+    }
+
     /**
      * Checks if the method is abstract or not.
      * @param clazz the class.
@@ -45,8 +112,15 @@ class MethodUtils {
      * @return {@code true} if the method does not exist or is abstract.
      */
     static boolean isAbstract(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
-        Method m = getMethodImpl(clazz, methodName, parameterTypes);
-        return m == null || Modifier.isAbstract(m.getModifiers());
+        Map<String, Boolean> answers = cacheFor(clazz);
+        String key = keyOf("abstract", methodName, parameterTypes);
+        Boolean result = answers.get(key);
+        if (result == null) {
+            Method m = getMethodImpl(clazz, methodName, parameterTypes);
+            result = m == null || Modifier.isAbstract(m.getModifiers());
+            answers.put(key, result);
+        }
+        return result;
     }
 
     /**
@@ -56,11 +130,18 @@ class MethodUtils {
     // TODO replace with core utility method once JENKINS-30002 is available in base version of Jenkins
     static boolean isOverridden(@Nonnull Class base, @Nonnull Class derived, @Nonnull String methodName,
                                        @Nonnull Class... types) {
-        Method baseMethod = getMethodImpl(base, methodName, types);
-        Method derivedMethod = getMethodImpl(derived, methodName, types);
-        return baseMethod == null ?
-                derivedMethod != null && !Modifier.isAbstract(derivedMethod.getModifiers())
-                : !baseMethod.equals(derivedMethod);
+        Map<String, Boolean> answers = cacheFor(derived);
+        String key = keyOf(base.getName(), methodName, types);
+        Boolean result = answers.get(key);
+        if (result == null) {
+            Method baseMethod = getMethodImpl(base, methodName, types);
+            Method derivedMethod = getMethodImpl(derived, methodName, types);
+            result = baseMethod == null ?
+                    derivedMethod != null && !Modifier.isAbstract(derivedMethod.getModifiers())
+                    : !baseMethod.equals(derivedMethod);
+            answers.put(key, result);
+        }
+        return result;
     }
 
     /**
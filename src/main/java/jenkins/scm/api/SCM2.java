@@ -64,7 +64,9 @@ public abstract class SCM2 extends SCM {
     public void afterSave(SCMTriggerItem owner) {}
 
     /**
-     * {@link Action}s to be displayed in the {@link SCMTriggerItem} page.
+     * {@link Action}s to be displayed in the {@link SCMTriggerItem} page. The result is cached until the
+     * {@link SCMTriggerItem} is saved or its {@link SCM} instances change, implementations whose actions change at
+     * other times should call {@link SCM2TransientActionFactory#invalidate(hudson.model.Item)}.
      *
      * @param owner the owner of this {@link SCM2}.
      * @return can be empty but never null
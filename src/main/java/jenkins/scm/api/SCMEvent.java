@@ -32,14 +32,34 @@ import hudson.model.Cause;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.security.ACL;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
+import jenkins.ExtensionListListener;
+import jenkins.model.Jenkins;
+import jenkins.scm.impl.events.SCMEventExecutorService;
+import jenkins.scm.impl.events.SCMEventJournal;
+import jenkins.scm.impl.events.SCMEventMetrics;
 import jenkins.util.Timer;
+import net.jcip.annotations.GuardedBy;
 import org.acegisecurity.context.SecurityContext;
 import org.acegisecurity.context.SecurityContextHolder;
 import org.apache.commons.lang.StringUtils;
@@ -97,12 +117,31 @@ public abstract class SCMEvent<P> {
      * An empty array of {@linkplain Cause}s.
      */
     private static final Cause[] EMPTY_CAUSES = new Cause[0];
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SCMEvent.class.getName());
     /**
      * An unknown origin.
      *
      * @since 2.0.3
      */
     public static final String ORIGIN_UNKNOWN = "?";
+    /**
+     * Escape hatch to revert to firing events on the shared {@link Timer} rather than the dedicated
+     * {@link SCMEventExecutorService}.
+     */
+    private static final boolean USE_TIMER = Boolean.getBoolean(SCMEvent.class.getName() + ".useTimer");
+    /**
+     * Set the {@code jenkins.scm.api.SCMEvent.disableThreadNames} system property to {@code true} to stop dispatch
+     * threads being renamed after the event they are dispatching. {@link #current()} is available regardless.
+     */
+    private static final boolean DISABLE_THREAD_NAMES =
+            Boolean.getBoolean(SCMEvent.class.getName() + ".disableThreadNames");
+    /**
+     * The event being dispatched by the current thread.
+     */
+    private static final ThreadLocal<SCMEvent<?>> CURRENT = new ThreadLocal<SCMEvent<?>>();
     /**
      * The event type.
      */
@@ -195,15 +234,79 @@ public abstract class SCMEvent<P> {
     }
 
     /**
-     * The {@link ScheduledExecutorService} that events should be fired on.
+     * The {@link ScheduledExecutorService} that events should be fired on. Events are dispatched on their own bounded
+     * thread pool so that they do not have to compete with all the other periodic work that runs on {@link Timer}.
+     * Setting the {@code jenkins.scm.api.SCMEvent.useTimer} system property to {@code true} reverts to using
+     * {@link Timer}.
      *
      * @return a {@link ScheduledExecutorService}.
      */
     @NonNull
     protected static ScheduledExecutorService executorService() {
-        // Future-proofing, if we find out that events are drowning Timer then we may need to move them to their
-        // own dedicated ScheduledExecutorService thread pool
-        return Timer.get();
+        return USE_TIMER ? Timer.get() : SCMEventExecutorService.get();
+    }
+
+    /**
+     * Dispatches an event on {@link #executorService()}. When running on the dedicated {@link SCMEventExecutorService}
+     * the event is subject to the {@link SCMEventExecutorService.OverflowPolicy} of its lane.
+     *
+     * @param dispatcher the dispatcher of the event.
+     * @return {@code true} if the event was accepted for dispatch, {@code false} if it was shed.
+     */
+    /*package*/ static boolean dispatch(@NonNull final Dispatcher<?> dispatcher) {
+        ScheduledExecutorService executor = executorService();
+        if (executor instanceof SCMEventExecutorService) {
+            return ((SCMEventExecutorService) executor).tryExecute(dispatcher.new Submission());
+        }
+        executor.execute(dispatcher);
+        return true;
+    }
+
+    /**
+     * Runs a task for an event on {@link #executorService()}, using the lane for the event when running on the
+     * dedicated {@link SCMEventExecutorService}.
+     *
+     * @param task  the task.
+     * @param event the event the task is for.
+     */
+    /*package*/ static void execute(@NonNull Runnable task, @NonNull SCMEvent<?> event) {
+        ScheduledExecutorService executor = executorService();
+        if (executor instanceof SCMEventExecutorService) {
+            ((SCMEventExecutorService) executor).execute(task, event);
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Runs a task for an event on {@link #executorService()} after the specified delay, using the lane for the event
+     * when running on the dedicated {@link SCMEventExecutorService}.
+     *
+     * @param task  the task.
+     * @param event the event the task is for.
+     * @param delay the delay.
+     * @param unit  the units of the delay.
+     */
+    /*package*/ static void schedule(@NonNull Runnable task, @NonNull SCMEvent<?> event, long delay,
+                                     @NonNull TimeUnit unit) {
+        ScheduledExecutorService executor = executorService();
+        if (executor instanceof SCMEventExecutorService) {
+            ((SCMEventExecutorService) executor).schedule(task, event, delay, unit);
+        } else {
+            executor.schedule(task, delay, unit);
+        }
+    }
+
+    /**
+     * Returns the event that the current thread is dispatching to {@link SCMEventListener} instances. This is
+     * intended for diagnostics, e.g. so that logging can record the event which caused a message.
+     *
+     * @return the event being dispatched or {@code null} if the current thread is not dispatching an event.
+     * @since FIXME
+     */
+    @CheckForNull
+    public static SCMEvent<?> current() {
+        return CURRENT.get();
     }
 
     /**
@@ -256,6 +359,36 @@ public abstract class SCMEvent<P> {
         return StringUtils.defaultIfBlank(origin, ORIGIN_UNKNOWN);
     }
 
+    /**
+     * Returns the URL of the server that the event concerns, used together with {@link SCMSource#getEventServerUrl()}
+     * and {@link SCMNavigator#getEventServerUrl()} to narrow down the owners that an event is routed to. The URL is
+     * compared after {@link SCMUri#normalize(String)}.
+     * <p>
+     * <strong>DO NOT TRUST THE RETURN VALUE.</strong> It is only used to rule out owners that cannot match.
+     *
+     * @return the server URL or {@code null} if the event does not identify the server.
+     * @since FIXME
+     */
+    @CheckForNull
+    public String getServerUrl() {
+        return null;
+    }
+
+    /**
+     * Returns a minimal, serializable form of this event from which an equivalent event can be recreated, so that an
+     * event which has been accepted for dispatch can be fired again if Jenkins stops before it has been processed.
+     * The memento will be written to disk in plain text, so it must only hold what is needed to recreate the event:
+     * never credentials, tokens or the raw provider payload. The default implementation returns {@code null}, events
+     * are only ever persisted if their implementation opts in by overriding this method.
+     *
+     * @return the memento or {@code null} if this event must not be persisted.
+     * @since FIXME
+     */
+    @CheckForNull
+    public Memento memento() {
+        return null;
+    }
+
     /**
      * Return a description of the event.
      *
@@ -397,6 +530,21 @@ public abstract class SCMEvent<P> {
         return result.toString();
     }
 
+    /**
+     * A minimal, serializable form of an {@link SCMEvent}, see {@link SCMEvent#memento()}.
+     *
+     * @since FIXME
+     */
+    public interface Memento extends Serializable {
+        /**
+         * Recreates the event.
+         *
+         * @return the event or {@code null} if the event can no longer be recreated.
+         */
+        @CheckForNull
+        SCMEvent<?> restore();
+    }
+
     /**
      * The type of event.
      */
@@ -434,6 +582,10 @@ public abstract class SCMEvent<P> {
     protected abstract static class Dispatcher<E extends SCMEvent<?>> implements Runnable {
         @Restricted(NoExternalUse.class)
         /*package*/ static final AtomicLong lastId = new AtomicLong();
+        /**
+         * Only used to park threads waiting on {@link #started} / {@link #finished}, the dispatch bookkeeping itself is
+         * lock-free.
+         */
         @Restricted(NoExternalUse.class)
         /*package*/ static final Lock lock = new ReentrantLock();
         @Restricted(NoExternalUse.class)
@@ -441,68 +593,610 @@ public abstract class SCMEvent<P> {
         @Restricted(NoExternalUse.class)
         /*package*/ static final Condition finished = lock.newCondition();
         @Restricted(NoExternalUse.class)
-        /*package*/ static long startedId = 0L;
+        /*package*/ static final AtomicLong startedId = new AtomicLong();
         @Restricted(NoExternalUse.class)
-        /*package*/ static long finishedId = 0L;
+        /*package*/ static final AtomicLong finishedId = new AtomicLong();
         @Restricted(NoExternalUse.class)
-        /*package*/ static int inFlight = 0;
+        /*package*/ static final AtomicInteger inFlight = new AtomicInteger();
+        /**
+         * The number of threads waiting on {@link #started} / {@link #finished}. A waiter must increment this
+         * <strong>before</strong> checking its wait condition (and decrement it once done) so that a dispatcher
+         * which sees zero waiters can safely skip taking the {@link #lock} to signal.
+         */
+        @Restricted(NoExternalUse.class)
+        /*package*/ static final AtomicInteger waiters = new AtomicInteger();
+        /**
+         * The batches currently accumulating events for {@link SCMEventListener#getBatchWindow(TimeUnit)} listeners,
+         * keyed by dispatcher class (i.e. event kind) and then listener.
+         */
+        @GuardedBy("batches")
+        private static final Map<Class<?>, Map<SCMEventListener, Batch<?>>> batches =
+                new HashMap<Class<?>, Map<SCMEventListener, Batch<?>>>();
 
         private final long id;
         private final E event;
+        /**
+         * The {@link System#nanoTime()} when this dispatcher was created, i.e. when the event was accepted for
+         * dispatch.
+         */
+        private final long enqueuedNanos;
+        /**
+         * The entry of the event in the {@link SCMEventJournal} or {@code null} if the event is not journaled.
+         */
+        @CheckForNull
+        private final SCMEventJournal.Entry journalEntry;
+        /**
+         * The prefix for the name of threads dispatching this event, computed on first use.
+         */
+        private volatile String threadNamePrefix;
 
         public Dispatcher(E event) {
             this.event = event;
             this.id = lastId.incrementAndGet();
+            this.enqueuedNanos = System.nanoTime();
+            SCMEventJournal journal = SCMEventJournal.get();
+            this.journalEntry = journal == null ? null : journal.recordEnqueued(event);
+            SCMEventMetrics.get().recordEnqueued();
+        }
+
+        /**
+         * Returns the event being dispatched.
+         *
+         * @return the event being dispatched.
+         * @since FIXME
+         */
+        protected final E getEvent() {
+            return event;
         }
 
         protected abstract void log(SCMEventListener l, Throwable e);
         protected abstract void fire(SCMEventListener l, E event);
 
+        /**
+         * Delivers a batch of events to a listener that has a {@link SCMEventListener#getBatchWindow(TimeUnit)}.
+         * The default implementation fires each event in turn.
+         *
+         * @param l      the listener.
+         * @param events the events, in the order they were dispatched.
+         * @since FIXME
+         */
+        protected void fireBatch(SCMEventListener l, List<E> events) {
+            for (E e : events) {
+                fire(l, e);
+            }
+        }
+
+        /**
+         * Records that this dispatcher will never be run, e.g. because its event has been superseded by a newer
+         * event or shed, so that the queue depth metrics stay accurate and nothing waits for it forever.
+         */
+        /*package*/ void discard() {
+            journalCompleted();
+            SCMEventMetrics.get().recordDiscarded();
+            advance(finishedId, id);
+            signalAll(finished);
+        }
+
+        /**
+         * Advances a watermark to the supplied id if the watermark is currently below the id.
+         *
+         * @param watermark the watermark.
+         * @param id        the id.
+         */
+        private static void advance(AtomicLong watermark, long id) {
+            long current;
+            while ((current = watermark.get()) < id) {
+                if (watermark.compareAndSet(current, id)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Wakes any threads waiting on the supplied condition, only taking the {@link #lock} if there are waiters.
+         *
+         * @param condition the condition to signal.
+         */
+        private static void signalAll(Condition condition) {
+            if (waiters.get() > 0) {
+                lock.lock();
+                try {
+                    condition.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
         @Override
         public void run() {
-            lock.lock();
+            advance(startedId, id);
+            inFlight.incrementAndGet();
+            signalAll(started);
+            long start = System.nanoTime();
+            long originNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - event.getTimestamp());
+            SCMEventMetrics.get().recordStarted();
+            SCMEvent<?> previous = CURRENT.get();
+            String oldName = enter();
+            SecurityContext context = ACL.impersonate(ACL.SYSTEM);
             try {
-                if (startedId < id) {
-                    startedId = id;
-                    started.signalAll();
+                Listeners listeners = Listeners.get();
+                List<ParallelNotification> parallel = null;
+                if (listeners.parallel.length > 0) {
+                    parallel = new ArrayList<ParallelNotification>(listeners.parallel.length);
+                    for (SCMEventListener l : listeners.parallel) {
+                        ParallelNotification notification = new ParallelNotification(l);
+                        parallel.add(notification);
+                        try {
+                            execute(notification.task, event);
+                        } catch (RejectedExecutionException e) {
+                            // we will run it ourselves below
+                        }
+                    }
+                }
+                for (SCMEventListener l : listeners.serial) {
+                    notifyListener(l);
+                }
+                for (SCMEventListener l : listeners.batched) {
+                    batch(l);
+                }
+                if (parallel != null) {
+                    awaitParallel(parallel);
                 }
-                inFlight++;
             } finally {
-                lock.unlock();
+                SecurityContextHolder.setContext(context);
+                exit(oldName, previous);
+                SCMEventMetrics.get().recordCompleted(event, originNanos, start - enqueuedNanos,
+                        System.nanoTime() - start);
+                journalCompleted();
+                advance(finishedId, id);
+                inFlight.decrementAndGet();
+                signalAll(finished);
             }
-            String oldName = Thread.currentThread().getName();
+        }
+
+        /**
+         * Records in the {@link SCMEventJournal} that this event no longer needs to be dispatched.
+         */
+        private void journalCompleted() {
+            if (journalEntry != null) {
+                SCMEventJournal journal = SCMEventJournal.get();
+                if (journal != null) {
+                    journal.recordCompleted(journalEntry);
+                }
+            }
+        }
+
+        /**
+         * Waits for the listeners that are being notified in parallel, each for up to its
+         * {@link SCMEventListener#getParallelTimeout(TimeUnit)} from when it started processing the event.
+         *
+         * @param notifications the notifications.
+         */
+        private void awaitParallel(List<ParallelNotification> notifications) {
+            // any tasks that have not been picked up by the executor yet we run ourselves, this way we can never
+            // deadlock waiting for a saturated executor to get around to running them (no-op if already started)
+            for (ParallelNotification notification : notifications) {
+                notification.task.run();
+            }
+            for (ParallelNotification notification : notifications) {
+                SCMEventListener l = notification.listener;
+                long timeout = l.getParallelTimeout(TimeUnit.NANOSECONDS);
+                if (notification.inline) {
+                    // we ran it ourselves so it has completed, but we could not stop waiting for it
+                    if (notification.elapsedNanos > timeout) {
+                        LOGGER.log(Level.WARNING, "SCMEventListener {0} took {1}ms processing {2}, longer than its "
+                                        + "timeout of {3}ms, while run on the dispatching thread as the executor was "
+                                        + "saturated",
+                                new Object[]{l, TimeUnit.NANOSECONDS.toMillis(notification.elapsedNanos), event,
+                                        l.getParallelTimeout(TimeUnit.MILLISECONDS)});
+                    }
+                    continue;
+                }
+                // every task has started by now, either on the executor or above
+                long remaining = timeout - (System.nanoTime() - notification.startedNanos);
+                try {
+                    notification.task.get(Math.max(0L, remaining), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    LOGGER.log(Level.WARNING, "SCMEventListener {0} did not complete processing {1} within {2}ms, "
+                                    + "it will be left to complete in the background",
+                            new Object[]{l, event, l.getParallelTimeout(TimeUnit.MILLISECONDS)});
+                } catch (ExecutionException e) {
+                    log(l, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Notifies a single listener of the event. The caller must already be impersonating {@link ACL#SYSTEM}.
+         *
+         * @param l the listener.
+         */
+        private void notifyListener(SCMEventListener l) {
+            long start = System.nanoTime();
+            boolean error = true;
             try {
-                Thread.currentThread().setName(String.format("%s %tc / %s",
-                        event.getClass(), event.getTimestamp(), oldName)
-                );
-                for (final SCMEventListener l : ExtensionList.lookup(SCMEventListener.class)) {
+                fire(l, event);
+                error = false;
+            } catch (LinkageError e) {
+                log(l, e);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                log(l, e);
+            } finally {
+                if (SecurityContextHolder.getContext().getAuthentication() != ACL.SYSTEM) {
+                    // the listener changed the authentication and did not restore it, do not let that leak into the
+                    // next listener
+                    ACL.impersonate(ACL.SYSTEM);
+                }
+                SCMEventMetrics.get().recordListener(l, event, System.nanoTime() - start, error);
+            }
+        }
+
+        /**
+         * Adds the event to the batch accumulating for a {@link SCMEventListener#getBatchWindow(TimeUnit)} listener,
+         * scheduling the delivery of the batch if this is the first event in it.
+         *
+         * @param l the listener.
+         */
+        private void batch(SCMEventListener l) {
+            Batch<E> batch;
+            boolean first = false;
+            synchronized (batches) {
+                Map<SCMEventListener, Batch<?>> byListener = batches.get(getClass());
+                if (byListener == null) {
+                    byListener = new HashMap<SCMEventListener, Batch<?>>();
+                    batches.put(getClass(), byListener);
+                }
+                @SuppressWarnings("unchecked")
+                Batch<E> existing = (Batch<E>) byListener.get(l);
+                if (existing == null) {
+                    batch = new Batch<E>(this, l);
+                    byListener.put(l, batch);
+                    first = true;
+                } else {
+                    batch = existing;
+                }
+                batch.events.add(event);
+            }
+            if (first) {
+                try {
+                    schedule(batch, event, l.getBatchWindow(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // shutting down, deliver what we have rather than lose it
+                    batch.run();
+                }
+            }
+        }
+
+        /**
+         * Marks the current thread as dispatching this event.
+         *
+         * @return the name of the thread to restore in {@link #exit(String, SCMEvent)} or {@code null} if the thread
+         * was not renamed.
+         */
+        @CheckForNull
+        private String enter() {
+            CURRENT.set(event);
+            if (DISABLE_THREAD_NAMES) {
+                return null;
+            }
+            Thread thread = Thread.currentThread();
+            String oldName = thread.getName();
+            String prefix = threadNamePrefix;
+            if (prefix == null) {
+                // racy but idempotent; plain concatenation as formatting a date per event shows up under load
+                prefix = event.getClass().getName() + " " + event.getTimestamp() + " / ";
+                threadNamePrefix = prefix;
+            }
+            thread.setName(prefix.concat(oldName));
+            return oldName;
+        }
+
+        /**
+         * Marks the current thread as no longer dispatching this event.
+         *
+         * @param oldName  the value returned by {@link #enter()}.
+         * @param previous the event the thread was dispatching before {@link #enter()}, e.g. when a listener fires an
+         *                 event that ends up being run by the calling thread.
+         */
+        private void exit(@CheckForNull String oldName, @CheckForNull SCMEvent<?> previous) {
+            if (oldName != null) {
+                Thread.currentThread().setName(oldName);
+            }
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+
+        /**
+         * Adapts this dispatcher to a {@link SCMEventExecutorService.Shedable}.
+         */
+        /*package*/ class Submission implements SCMEventExecutorService.Shedable {
+            /**
+             * {@inheritDoc}
+             */
+            @NonNull
+            @Override
+            public SCMEvent<?> getEvent() {
+                return event;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void shed() {
+                discard();
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run() {
+                Dispatcher.this.run();
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public String toString() {
+                return "Dispatch of " + event;
+            }
+        }
+
+        /**
+         * Notifies a {@link SCMEventListener#isParallelSafe()} listener from whichever thread picks it up.
+         */
+        private class ParallelNotification implements Runnable {
+            /**
+             * The listener.
+             */
+            private final SCMEventListener listener;
+            /**
+             * The task that runs this notification at most once.
+             */
+            private final FutureTask<Void> task;
+            /**
+             * The {@link System#nanoTime()} when the listener started processing the event, initially when the
+             * notification was created so that a task that has only just been started is not measured from zero.
+             */
+            private volatile long startedNanos;
+            /**
+             * How long the listener took to process the event, only valid once the {@link #task} is done.
+             */
+            private volatile long elapsedNanos;
+            /**
+             * {@code true} if the listener was notified by the dispatching thread itself.
+             */
+            private volatile boolean inline;
+
+            /**
+             * Constructor.
+             *
+             * @param listener the listener.
+             */
+            private ParallelNotification(SCMEventListener listener) {
+                this.listener = listener;
+                this.task = new FutureTask<Void>(this, null);
+                this.startedNanos = System.nanoTime();
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                startedNanos = start;
+                try {
+                    if (CURRENT.get() == event) {
+                        // picked up by the dispatching thread itself which is already marked and impersonating
+                        inline = true;
+                        notifyListener(listener);
+                        return;
+                    }
+                    SCMEvent<?> previous = CURRENT.get();
+                    String oldName = enter();
                     SecurityContext context = ACL.impersonate(ACL.SYSTEM);
                     try {
-                        fire(l, event);
-                    } catch (LinkageError e) {
-                        log(l, e);
-                    } catch (Error e) {
-                        throw e;
-                    } catch (Throwable e) {
-                        log(l, e);
+                        notifyListener(listener);
                     } finally {
                         SecurityContextHolder.setContext(context);
+                        exit(oldName, previous);
                     }
+                } finally {
+                    elapsedNanos = System.nanoTime() - start;
                 }
-            } finally {
-                Thread.currentThread().setName(oldName);
-                lock.lock();
+            }
+        }
+
+        /**
+         * The events of one kind accumulated for a {@link SCMEventListener#getBatchWindow(TimeUnit)} listener.
+         *
+         * @param <E> the type of event.
+         */
+        private static final class Batch<E extends SCMEvent<?>> implements Runnable {
+            /**
+             * The dispatcher of the first event in the batch, used to deliver the batch.
+             */
+            private final Dispatcher<E> dispatcher;
+            /**
+             * The listener.
+             */
+            private final SCMEventListener listener;
+            /**
+             * The events.
+             */
+            @GuardedBy("Dispatcher.batches")
+            private final List<E> events = new ArrayList<E>();
+
+            /**
+             * Constructor.
+             *
+             * @param dispatcher the dispatcher of the first event.
+             * @param listener   the listener.
+             */
+            private Batch(Dispatcher<E> dispatcher, SCMEventListener listener) {
+                this.dispatcher = dispatcher;
+                this.listener = listener;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run() {
+                synchronized (batches) {
+                    Map<SCMEventListener, Batch<?>> byListener = batches.get(dispatcher.getClass());
+                    if (byListener == null || byListener.get(listener) != this) {
+                        // already delivered
+                        return;
+                    }
+                    byListener.remove(listener);
+                }
+                // no more events can be added once removed from the map
+                List<E> events = Collections.unmodifiableList(this.events);
+                long start = System.nanoTime();
+                boolean error = true;
+                SecurityContext context = ACL.impersonate(ACL.SYSTEM);
                 try {
-                    if (finishedId < id) {
-                        finishedId = id;
+                    dispatcher.fireBatch(listener, events);
+                    error = false;
+                } catch (LinkageError e) {
+                    dispatcher.log(listener, e);
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    dispatcher.log(listener, e);
+                } finally {
+                    SecurityContextHolder.setContext(context);
+                    long nanos = (System.nanoTime() - start) / events.size();
+                    for (E event : events) {
+                        SCMEventMetrics.get().recordListener(listener, event, nanos, error);
                     }
-                    inFlight--;
-                    if (inFlight <= 0) {
-                        inFlight = 0;
-                        finished.signalAll();
+                }
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public String toString() {
+                return "Batch delivery of " + events.size() + " events to " + listener;
+            }
+        }
+
+        /**
+         * An immutable snapshot of the {@link SCMEventListener} extensions split by
+         * {@link SCMEventListener#isParallelSafe()}, so that each event dispatch does not have to walk and partition
+         * the extension list again. The snapshot is discarded by an {@link ExtensionListListener} when the extension
+         * list changes.
+         */
+        private static final class Listeners {
+            /**
+             * The most recent snapshot.
+             */
+            private static volatile Listeners current;
+            /**
+             * Incremented each time the extension list changes, invalidating any snapshot taken before the change.
+             */
+            private static final AtomicLong generation = new AtomicLong();
+            /**
+             * The extension list that {@link Invalidator} has been registered with.
+             */
+            @GuardedBy("Listeners.class")
+            private static ExtensionList<SCMEventListener> registered;
+            /**
+             * The {@link Jenkins} instance the snapshot was taken from, a new instance has a new extension list.
+             */
+            private final Jenkins jenkins;
+            /**
+             * The {@link #generation} when the snapshot was taken.
+             */
+            private final long taken;
+            /**
+             * The listeners to notify serially, in extension ordinal order.
+             */
+            private final SCMEventListener[] serial;
+            /**
+             * The listeners to notify in parallel.
+             */
+            private final SCMEventListener[] parallel;
+            /**
+             * The listeners to notify in batches.
+             */
+            private final SCMEventListener[] batched;
+
+            /**
+             * Constructor.
+             *
+             * @param jenkins the {@link Jenkins} instance.
+             * @param source  the extension list to take the snapshot from.
+             * @param taken   the {@link #generation} before the snapshot was taken.
+             */
+            private Listeners(Jenkins jenkins, ExtensionList<SCMEventListener> source, long taken) {
+                this.jenkins = jenkins;
+                this.taken = taken;
+                List<SCMEventListener> serial = new ArrayList<SCMEventListener>();
+                List<SCMEventListener> parallel = new ArrayList<SCMEventListener>();
+                List<SCMEventListener> batched = new ArrayList<SCMEventListener>();
+                for (SCMEventListener l : source) {
+                    if (l.getBatchWindow(TimeUnit.MILLISECONDS) > 0L) {
+                        batched.add(l);
+                    } else if (l.isParallelSafe()) {
+                        parallel.add(l);
+                    } else {
+                        serial.add(l);
                     }
-                } finally {
-                    lock.unlock();
+                }
+                this.serial = serial.toArray(new SCMEventListener[serial.size()]);
+                this.parallel = parallel.toArray(new SCMEventListener[parallel.size()]);
+                this.batched = batched.toArray(new SCMEventListener[batched.size()]);
+            }
+
+            /**
+             * Returns the snapshot, taking it if the extension list has changed since the last snapshot.
+             *
+             * @return the snapshot.
+             */
+            private static Listeners get() {
+                Jenkins jenkins = Jenkins.getActiveInstance();
+                Listeners snapshot = current;
+                if (snapshot != null && snapshot.jenkins == jenkins && snapshot.taken == generation.get()) {
+                    return snapshot;
+                }
+                synchronized (Listeners.class) {
+                    ExtensionList<SCMEventListener> source = jenkins.getExtensionList(SCMEventListener.class);
+                    if (registered != source) {
+                        source.addListener(new Invalidator());
+                        registered = source;
+                    }
+                    // a change while the snapshot is being taken leaves it stale, so it is retaken by the next event
+                    snapshot = new Listeners(jenkins, source, generation.get());
+                    current = snapshot;
+                    return snapshot;
+                }
+            }
+
+            /**
+             * Discards the snapshot when the extension list changes, e.g. when a plugin is dynamically loaded.
+             */
+            private static final class Invalidator extends ExtensionListListener {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void onChange() {
+                    generation.incrementAndGet();
                 }
             }
         }
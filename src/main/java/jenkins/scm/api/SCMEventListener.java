@@ -25,15 +25,79 @@
 
 package jenkins.scm.api;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.ExtensionPoint;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base class for listeners to {@link SCMEvent}s
+ * <p>
+ * By default each event is delivered to every listener in turn, in extension ordinal order, on a single thread. A
+ * listener that does not depend on that ordering can override {@link #isParallelSafe()} so that it is notified
+ * concurrently with the other listeners and a slow listener does not hold up delivery of the event to the rest.
+ * <p>
+ * A listener that does expensive work per event which could be shared across events (such as walking all the
+ * {@link SCMSourceOwners#all()}) can override {@link #getBatchWindow(TimeUnit)} to have the events accumulated and
+ * delivered as a batch through {@link #onSCMHeadEvents(List)}, {@link #onSCMSourceEvents(List)} and
+ * {@link #onSCMNavigatorEvents(List)}.
  *
  * @since 2.0
  */
 public class SCMEventListener implements ExtensionPoint {
 
+    /**
+     * The default for {@link #getParallelTimeout(TimeUnit)}.
+     */
+    private static final long PARALLEL_TIMEOUT_SECONDS =
+            Long.getLong(SCMEventListener.class.getName() + ".parallelTimeoutSeconds", 300L);
+
+    /**
+     * Returns {@code true} if this listener can be notified of an event concurrently with the other listeners. Such
+     * listeners must not assume that any other listener has (or has not) already seen the event and must be
+     * thread-safe. Listeners that do not opt in continue to be notified serially in extension ordinal order.
+     * The result is cached by the dispatcher so it must not change over the lifetime of the listener.
+     *
+     * @return {@code true} if this listener can be notified concurrently with the other listeners.
+     * @since FIXME
+     */
+    public boolean isParallelSafe() {
+        return false;
+    }
+
+    /**
+     * Returns how long the dispatch of an event will wait for this listener when it is notified concurrently (see
+     * {@link #isParallelSafe()}), measured from when this listener starts processing the event. Once the timeout has
+     * elapsed the dispatch will log a warning and complete without waiting any further, the listener itself is not
+     * interrupted. When the executor is saturated the listener is notified on the dispatching thread instead, in
+     * which case the dispatch cannot stop waiting and exceeding the timeout only logs a warning. The default is
+     * controlled by the {@code jenkins.scm.api.SCMEventListener.parallelTimeoutSeconds} system property (300 seconds
+     * if unset).
+     *
+     * @param unit the units to return the timeout in.
+     * @return the timeout.
+     * @since FIXME
+     */
+    public long getParallelTimeout(@NonNull TimeUnit unit) {
+        return unit.convert(PARALLEL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns how long events should be accumulated for this listener before they are delivered as a batch. When
+     * positive, this listener is notified through {@link #onSCMHeadEvents(List)}, {@link #onSCMSourceEvents(List)}
+     * and {@link #onSCMNavigatorEvents(List)} with all the events of each kind fired during the window (starting from
+     * the first such event), on a dispatcher thread of its own and after the other listeners have been notified of
+     * the first event. The default of {@code 0} delivers each event as soon as it is dispatched. The result is cached
+     * by the dispatcher so it must not change over the lifetime of the listener.
+     *
+     * @param unit the units to return the window in.
+     * @return the batch window or {@code 0} to disable batching.
+     * @since FIXME
+     */
+    public long getBatchWindow(@NonNull TimeUnit unit) {
+        return 0L;
+    }
+
     /**
      * Callback for a {@link SCMHeadEvent}
      *
@@ -60,4 +124,43 @@ public class SCMEventListener implements ExtensionPoint {
     public void onSCMSourceEvent(SCMSourceEvent<?> event) {
 
     }
+
+    /**
+     * Callback for a batch of {@link SCMHeadEvent}s when {@link #getBatchWindow(TimeUnit)} is positive. The default
+     * implementation calls {@link #onSCMHeadEvent(SCMHeadEvent)} for each event in turn.
+     *
+     * @param events the events, in the order they were dispatched.
+     * @since FIXME
+     */
+    public void onSCMHeadEvents(@NonNull List<SCMHeadEvent<?>> events) {
+        for (SCMHeadEvent<?> event : events) {
+            onSCMHeadEvent(event);
+        }
+    }
+
+    /**
+     * Callback for a batch of {@link SCMNavigatorEvent}s when {@link #getBatchWindow(TimeUnit)} is positive. The
+     * default implementation calls {@link #onSCMNavigatorEvent(SCMNavigatorEvent)} for each event in turn.
+     *
+     * @param events the events, in the order they were dispatched.
+     * @since FIXME
+     */
+    public void onSCMNavigatorEvents(@NonNull List<SCMNavigatorEvent<?>> events) {
+        for (SCMNavigatorEvent<?> event : events) {
+            onSCMNavigatorEvent(event);
+        }
+    }
+
+    /**
+     * Callback for a batch of {@link SCMSourceEvent}s when {@link #getBatchWindow(TimeUnit)} is positive. The
+     * default implementation calls {@link #onSCMSourceEvent(SCMSourceEvent)} for each event in turn.
+     *
+     * @param events the events, in the order they were dispatched.
+     * @since FIXME
+     */
+    public void onSCMSourceEvents(@NonNull List<SCMSourceEvent<?>> events) {
+        for (SCMSourceEvent<?> event : events) {
+            onSCMSourceEvent(event);
+        }
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.api;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The outcome of {@link SCMSource#fetchChanges(SCMSourceCriteria, SCMHeadObserver, String, TaskListener)}: which
+ * heads were removed since the checkpoint and the checkpoint to pass to the next incremental fetch.
+ *
+ * @since FIXME
+ */
+public final class SCMHeadChanges {
+    /**
+     * {@code true} if a full retrieve was performed.
+     */
+    private final boolean full;
+    /**
+     * The heads removed since the checkpoint.
+     */
+    @NonNull
+    private final Set<SCMHead> removed;
+    /**
+     * The checkpoint for the next fetch.
+     */
+    @CheckForNull
+    private final String checkpoint;
+
+    /**
+     * Constructor.
+     *
+     * @param full       {@code true} if a full retrieve was performed.
+     * @param removed    the heads removed since the checkpoint.
+     * @param checkpoint the checkpoint for the next fetch.
+     */
+    private SCMHeadChanges(boolean full, @NonNull Set<SCMHead> removed, @CheckForNull String checkpoint) {
+        this.full = full;
+        this.removed = removed;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Creates the outcome of a full retrieve, where every current head has been observed.
+     *
+     * @param checkpoint the checkpoint for the next fetch or {@code null} if the source cannot provide one.
+     * @return the outcome.
+     */
+    @NonNull
+    public static SCMHeadChanges full(@CheckForNull String checkpoint) {
+        return new SCMHeadChanges(true, Collections.<SCMHead>emptySet(), checkpoint);
+    }
+
+    /**
+     * Creates the outcome of an incremental retrieve, where only the heads created or updated since the checkpoint
+     * have been observed.
+     *
+     * @param removed    the heads that have been removed (or no longer meet the criteria) since the checkpoint.
+     * @param checkpoint the checkpoint for the next fetch or {@code null} if the source cannot provide one.
+     * @return the outcome.
+     */
+    @NonNull
+    public static SCMHeadChanges incremental(@NonNull Set<? extends SCMHead> removed,
+                                             @CheckForNull String checkpoint) {
+        return new SCMHeadChanges(false,
+                Collections.unmodifiableSet(new LinkedHashSet<SCMHead>(removed)), checkpoint);
+    }
+
+    /**
+     * Returns {@code true} if a full retrieve was performed, in which case the observer has seen every current head
+     * and any head that was not observed should be considered removed.
+     *
+     * @return {@code true} if a full retrieve was performed, {@code false} if only changes were observed.
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * Returns the heads that have been removed since the checkpoint. Always empty when {@link #isFull()}.
+     *
+     * @return the heads that have been removed since the checkpoint.
+     */
+    @NonNull
+    public Set<SCMHead> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Returns the opaque checkpoint to pass to the next
+     * {@link SCMSource#fetchChanges(SCMSourceCriteria, SCMHeadObserver, String, TaskListener)}.
+     *
+     * @return the checkpoint or {@code null} if the next fetch will have to be a full retrieve.
+     */
+    @CheckForNull
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "SCMHeadChanges{full=" + full + ", removed=" + removed + ", checkpoint='" + checkpoint + "'}";
+    }
+}
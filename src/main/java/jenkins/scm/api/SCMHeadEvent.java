@@ -31,8 +31,11 @@ import hudson.model.Item;
 import hudson.scm.SCM;
 import hudson.triggers.SCMTrigger;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -40,6 +43,9 @@ import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 import jenkins.scm.impl.SCMTriggerListener;
+import net.jcip.annotations.GuardedBy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.jvnet.localizer.Localizable;
 
 /**
@@ -55,6 +61,21 @@ public abstract class SCMHeadEvent<P> extends SCMEvent<P> {
      */
     private static final Logger LOGGER = Logger.getLogger(SCMHeadEvent.class.getName());
 
+    /**
+     * The default for {@link #COALESCE_WINDOW_MILLIS}.
+     */
+    private static final long DEFAULT_COALESCE_WINDOW_MILLIS = 1000L;
+
+    /**
+     * How long {@link #fireNow(SCMHeadEvent)} will hold an event back waiting for newer events that supersede it, see
+     * {@link #isSupersededBy(SCMHeadEvent)}. Controlled by the
+     * {@code jenkins.scm.api.SCMHeadEvent.coalesceWindowMillis} system property, zero disables coalescing. Not final
+     * so that it can be adjusted from the script console and by tests.
+     */
+    @Restricted(NoExternalUse.class)
+    public static volatile long COALESCE_WINDOW_MILLIS = Math.max(0L,
+            Long.getLong(SCMHeadEvent.class.getName() + ".coalesceWindowMillis", DEFAULT_COALESCE_WINDOW_MILLIS));
+
     /**
      * {@inheritDoc}
      */
@@ -196,7 +217,9 @@ public abstract class SCMHeadEvent<P> extends SCMEvent<P> {
 
     /**
      * Wraps a {@link SCMHeadObserver} such that the wrapped observer will only observe {@link SCMHead} instances
-     * mentioned in this event.
+     * mentioned in this event. The {@link SCMHeadObserver#getIncludes()} and
+     * {@link SCMHeadObserver#getIncludedNames()} of the returned observer are restricted to those heads so that the
+     * {@link SCMSource} can perform a targeted fetch of just the heads mentioned in this event.
      *
      * @param source   the {@link SCMSource}.
      * @param delegate the delegate.
@@ -207,13 +230,90 @@ public abstract class SCMHeadEvent<P> extends SCMEvent<P> {
         return new Validated<O>(delegate, source);
     }
 
+    /**
+     * Tests if this event is made redundant by a newer event, that is if every listener would do at least the same
+     * work for the newer event as it would for this one. Unless coalescing is disabled (by setting the
+     * {@code jenkins.scm.api.SCMHeadEvent.coalesceWindowMillis} system property to zero)
+     * {@link #fireNow(SCMHeadEvent)} holds each event back for the window and an event that is superseded by a newer
+     * event fired during the window is discarded in favour of the newer event, i.e. the newest payload and timestamp
+     * are kept.
+     * <p>
+     * The default implementation requires an event of the same class and {@link #getType()} for the same
+     * {@link #getSourceName()} and {@link #getServerUrl()}. A re-delivery (an equal {@link #getPayload()}) is always
+     * superseded. Otherwise the {@link #heads(SCMSource)} of both events are compared for every {@link SCMSource}
+     * of the {@link SCMSourceOwners#candidates(SCMHeadEvent)} that either event matches: the older event is
+     * superseded if there is at least one such source and the newer event concerns exactly the same heads for each
+     * of them, so that, for example, several pushes to the same branch in quick succession only trigger one pass
+     * through the listeners. Events for different heads are never merged into one event as the heads of an event
+     * are derived from its provider specific payload, which only the provider could combine; both are dispatched.
+     * Implementations that can tell from the payload alone which heads the event concerns may override this method
+     * to avoid looking up the sources. An implementation must only return {@code true} if
+     * {@link #heads(SCMSource)} of the newer event includes all the heads of this event for every {@link SCMSource}.
+     *
+     * @param newer the newer event.
+     * @return {@code true} if this event can be discarded in favour of the newer event.
+     * @since FIXME
+     */
+    public boolean isSupersededBy(@NonNull SCMHeadEvent<?> newer) {
+        if (getClass() != newer.getClass()
+                || getType() != newer.getType()
+                || !getSourceName().equals(newer.getSourceName())) {
+            return false;
+        }
+        String serverUrl = getServerUrl();
+        if (serverUrl == null ? newer.getServerUrl() != null : !serverUrl.equals(newer.getServerUrl())) {
+            return false;
+        }
+        if (getPayload().equals(newer.getPayload())) {
+            // a re-delivery
+            return true;
+        }
+        boolean matched = false;
+        for (SCMSourceOwner owner : SCMSourceOwners.candidates(this)) {
+            for (SCMSource source : owner.getSCMSources()) {
+                Set<SCMHead> heads = heads(source).keySet();
+                Set<SCMHead> newerHeads = newer.heads(source).keySet();
+                if (heads.isEmpty() && newerHeads.isEmpty()) {
+                    // neither event concerns this source
+                    continue;
+                }
+                if (!heads.equals(newerHeads)) {
+                    return false;
+                }
+                matched = true;
+            }
+        }
+        // without a source we cannot tell which heads the events concern, so be conservative
+        return matched;
+    }
+
     /**
      * Fires the {@link SCMHeadEvent} to all registered {@link SCMEventListener} instances.
      *
      * @param event the event to fire.
+     * @see #isSupersededBy(SCMHeadEvent)
      */
     public static void fireNow(@NonNull final SCMHeadEvent<?> event) {
-        executorService().execute(new DispatcherImpl(event));
+        tryFireNow(event);
+    }
+
+    /**
+     * Fires the {@link SCMHeadEvent} to all registered {@link SCMEventListener} instances unless the event dispatch
+     * queue is saturated and configured to shed events. Events that are being held back for coalescing are always
+     * accepted.
+     *
+     * @param event the event to fire.
+     * @return {@code true} if the event was accepted for dispatch, {@code false} if it was shed.
+     * @see #isSupersededBy(SCMHeadEvent)
+     * @since FIXME
+     */
+    public static boolean tryFireNow(@NonNull final SCMHeadEvent<?> event) {
+        long window = COALESCE_WINDOW_MILLIS;
+        if (window > 0L) {
+            Coalescer.INSTANCE.submit(event, window);
+            return true;
+        }
+        return dispatch(new DispatcherImpl(event));
     }
 
     /**
@@ -224,7 +324,7 @@ public abstract class SCMHeadEvent<P> extends SCMEvent<P> {
      * @param delayUnits the units of time in which the delay is expressed.
      */
     public static void fireLater(@NonNull final SCMHeadEvent<?> event, long delay, TimeUnit delayUnits) {
-        executorService().schedule(new DispatcherImpl(event), delay, delayUnits);
+        schedule(new DispatcherImpl(event), event, delay, delayUnits);
     }
 
     private static class DispatcherImpl extends Dispatcher<SCMHeadEvent<?>> {
@@ -246,6 +346,135 @@ public abstract class SCMHeadEvent<P> extends SCMEvent<P> {
         protected void fire(SCMEventListener l, SCMHeadEvent<?> event) {
             l.onSCMHeadEvent(event);
         }
+
+        @Override
+        protected void fireBatch(SCMEventListener l, List<SCMHeadEvent<?>> events) {
+            l.onSCMHeadEvents(events);
+        }
+    }
+
+    /**
+     * Holds events back for {@link #COALESCE_WINDOW_MILLIS} so that events superseded by newer events can be dropped.
+     */
+    private static class Coalescer {
+        /**
+         * Singleton.
+         */
+        private static final Coalescer INSTANCE = new Coalescer();
+        /**
+         * The events being held back, keyed by {@link SCMHeadEvent#getSourceName()}.
+         */
+        @GuardedBy("this")
+        private final Map<String, List<Pending>> pending = new HashMap<String, List<Pending>>();
+
+        /**
+         * Holds back an event, discarding it or an event already held back if one supersedes the other.
+         *
+         * @param event  the event.
+         * @param window how long to hold the event back for in milliseconds.
+         */
+        private void submit(@NonNull SCMHeadEvent<?> event, long window) {
+            String sourceName = event.getSourceName();
+            while (true) {
+                List<Pending> entries;
+                List<SCMHeadEvent<?>> held;
+                synchronized (this) {
+                    entries = pending.get(sourceName);
+                    entries = entries == null ? new ArrayList<Pending>() : new ArrayList<Pending>(entries);
+                    held = new ArrayList<SCMHeadEvent<?>>(entries.size());
+                    for (Pending p : entries) {
+                        held.add(p.dispatcher.getEvent());
+                    }
+                }
+                // isSupersededBy may look up the sources of the event so it is evaluated without holding the lock
+                Pending match = null;
+                boolean replace = false;
+                for (int i = 0; i < entries.size() && match == null; i++) {
+                    SCMHeadEvent<?> h = held.get(i);
+                    if (event.getTimestamp() >= h.getTimestamp() && h.isSupersededBy(event)) {
+                        match = entries.get(i);
+                        replace = true;
+                    } else if (event.getTimestamp() <= h.getTimestamp() && event.isSupersededBy(h)) {
+                        match = entries.get(i);
+                    }
+                }
+                Pending entry;
+                synchronized (this) {
+                    List<Pending> current = pending.get(sourceName);
+                    if (match != null) {
+                        SCMHeadEvent<?> h = held.get(entries.indexOf(match));
+                        if (current == null || !current.contains(match) || match.dispatcher.getEvent() != h) {
+                            // the held event was dispatched or replaced while we were comparing, start over
+                            continue;
+                        }
+                        if (replace) {
+                            LOGGER.log(Level.FINE, "Coalescing {0} into newer {1}", new Object[]{h, event});
+                            match.dispatcher.discard();
+                            match.dispatcher = new DispatcherImpl(event);
+                        } else {
+                            LOGGER.log(Level.FINE, "Coalescing {0} into newer {1}", new Object[]{event, h});
+                        }
+                        return;
+                    }
+                    if (current == null) {
+                        current = new ArrayList<Pending>(1);
+                        pending.put(sourceName, current);
+                    }
+                    // an event held back meanwhile will not be coalesced with this one, which is merely a missed
+                    // opportunity
+                    entry = new Pending(sourceName, new DispatcherImpl(event));
+                    current.add(entry);
+                }
+                schedule(entry, event, window, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+
+        /**
+         * An event that is being held back.
+         */
+        private class Pending implements Runnable {
+            /**
+             * The {@link SCMHeadEvent#getSourceName()}.
+             */
+            private final String sourceName;
+            /**
+             * The dispatcher of the newest event.
+             */
+            @GuardedBy("Coalescer.this")
+            private DispatcherImpl dispatcher;
+
+            /**
+             * Constructor.
+             *
+             * @param sourceName the {@link SCMHeadEvent#getSourceName()}.
+             * @param dispatcher the dispatcher of the event.
+             */
+            private Pending(String sourceName, DispatcherImpl dispatcher) {
+                this.sourceName = sourceName;
+                this.dispatcher = dispatcher;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run() {
+                DispatcherImpl dispatcher;
+                synchronized (Coalescer.this) {
+                    List<Pending> entries = pending.get(sourceName);
+                    if (entries != null) {
+                        entries.remove(this);
+                        if (entries.isEmpty()) {
+                            pending.remove(sourceName);
+                        }
+                    }
+                    dispatcher = this.dispatcher;
+                }
+                // the window has elapsed, no more events can be coalesced into this one so just dispatch it
+                dispatcher.run();
+            }
+        }
     }
 
     /**
@@ -280,6 +509,15 @@ public abstract class SCMHeadEvent<P> extends SCMEvent<P> {
             if (i != null) {
                 untrusted.keySet().retainAll(i);
             }
+            Set<String> names = delegate.getIncludedNames();
+            if (names != null) {
+                // the delegate may only know the names of the heads it wants
+                for (Iterator<SCMHead> iterator = untrusted.keySet().iterator(); iterator.hasNext(); ) {
+                    if (!names.contains(iterator.next().getName())) {
+                        iterator.remove();
+                    }
+                }
+            }
             includes = new HashSet<SCMHead>(untrusted.keySet()); // copy now because we use untrusted to track progress
             trusted = new HashMap<SCMHead, SCMRevision>(untrusted.size());
         }
@@ -27,12 +27,23 @@ package jenkins.scm.api;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.jcip.annotations.GuardedBy;
 
 /**
@@ -77,6 +88,37 @@ public abstract class SCMHeadObserver {
         return null;
     }
 
+    /**
+     * Returns the {@link SCMHead#getName()}s of the heads that this observer is interested in or {@code null} if
+     * interested in all {@link SCMHead} instances. This is the same <i>hint</i> as {@link #getIncludes()} expressed
+     * by name, which allows a {@link SCMSource} to perform a targeted fetch of just the named heads (for example
+     * one remote call per branch) rather than listing every head and discarding the ones that are not included.
+     * An observer that only knows the names of the heads it wants, such as {@link Named}, can express the hint here
+     * even though it cannot return anything from {@link #getIncludes()}.
+     * <p>
+     * <strong>Implementations should not assume that the {@link #getIncludedNames()} will be honoured.</strong>
+     *
+     * @return the names of the heads that this observer is interested in or {@code null}.
+     * @since FIXME
+     */
+    @CheckForNull
+    public Set<String> getIncludedNames() {
+        return namesOf(getIncludes());
+    }
+
+    /**
+     * Returns whether this observer can be used from multiple threads at the same time, that is whether
+     * {@link #observe(SCMHead, SCMRevision)}, {@link #isObserving()} and {@link #getIncludes()} may be called
+     * concurrently. A {@link SCMSource} that processes heads concurrently must only do so with a thread-safe observer,
+     * any observer can be made thread-safe with {@link #synchronize(SCMHeadObserver)}.
+     *
+     * @return {@code true} if and only if this observer is thread-safe.
+     * @since FIXME
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * Wraps multiple observers returning a combined observer that remains observing as long as at least one of the
      * wrapped observers
@@ -112,6 +154,70 @@ public abstract class SCMHeadObserver {
         return new Collector();
     }
 
+    /**
+     * Wraps multiple observers returning a combined thread-safe observer that remains observing as long as at least
+     * one of the wrapped observers is still observing.
+     *
+     * @param observers the observers to wrap.
+     * @return a wrapped observer.
+     * @since FIXME
+     */
+    @NonNull
+    public static ConcurrentAllFinished allOfConcurrently(SCMHeadObserver... observers) {
+        return new ConcurrentAllFinished(observers);
+    }
+
+    /**
+     * Wraps multiple observers returning a combined thread-safe observer that remains observing until one of the
+     * wrapped observers stops observing.
+     *
+     * @param observers the observers to wrap.
+     * @return a wrapped observer.
+     * @since FIXME
+     */
+    @NonNull
+    public static ConcurrentOneFinished firstConcurrently(SCMHeadObserver... observers) {
+        return new ConcurrentOneFinished(observers);
+    }
+
+    /**
+     * Creates a thread-safe observer that collects all the heads and revisions.
+     *
+     * @return a thread-safe observer that collects all the heads and revisions.
+     * @since FIXME
+     */
+    @NonNull
+    public static ConcurrentCollector collectConcurrently() {
+        return new ConcurrentCollector();
+    }
+
+    /**
+     * Creates a thread-safe observer that streams the observed heads and revisions into a bounded queue so that they
+     * can be consumed while the scan is still in progress. The producer will block once the queue is full.
+     *
+     * @param capacity the maximum number of heads that can be pending consumption.
+     * @return a thread-safe observer that streams the heads and revisions.
+     * @since FIXME
+     */
+    @NonNull
+    public static Streaming stream(int capacity) {
+        return new Streaming(capacity);
+    }
+
+    /**
+     * Creates a thread-safe observer that filters a delegates observer to the specified heads.
+     *
+     * @param <O>      the type of observer that will be filtered.
+     * @param delegate the delegate
+     * @param heads    the head to watch out for.
+     * @return an observer that wraps the supplied delegate.
+     * @since FIXME
+     */
+    @NonNull
+    public static <O extends SCMHeadObserver> ConcurrentFilter<O> filterConcurrently(O delegate, SCMHead... heads) {
+        return new ConcurrentFilter<O>(delegate, heads);
+    }
+
     /**
      * Creates an observer that selects the revision of a specific head.
      *
@@ -148,6 +254,19 @@ public abstract class SCMHeadObserver {
         return new Named(headName);
     }
 
+    /**
+     * Wraps an observer so that it can be used from multiple threads at the same time.
+     *
+     * @param delegate the observer to wrap.
+     * @param <O>      the type of observer.
+     * @return a thread-safe observer.
+     * @since FIXME
+     */
+    @NonNull
+    public static <O extends SCMHeadObserver> Synchronized<O> synchronize(@NonNull O delegate) {
+        return new Synchronized<O>(delegate);
+    }
+
     /**
      * Creates an observer that selects the first revision it finds. Also useful for quick checks of non-empty.
      *
@@ -262,6 +381,14 @@ public abstract class SCMHeadObserver {
             includesPopulated = true;
             return result;
         }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<String> getIncludedNames() {
+            return includedNamesOf(observers);
+        }
     }
 
     /**
@@ -356,6 +483,14 @@ public abstract class SCMHeadObserver {
             includesPopulated = true;
             return result;
         }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<String> getIncludedNames() {
+            return includedNamesOf(observers);
+        }
     }
 
     /**
@@ -502,6 +637,14 @@ public abstract class SCMHeadObserver {
             return revision == null;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<String> getIncludedNames() {
+            return Collections.singleton(head);
+        }
+
     }
 
     /**
@@ -588,6 +731,14 @@ public abstract class SCMHeadObserver {
         public boolean isObserving() {
             return false;
         }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -645,6 +796,16 @@ public abstract class SCMHeadObserver {
         public Set<SCMHead> getIncludes() {
             return delegate.getIncludes();
         }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<String> getIncludedNames() {
+            Set<SCMHead> includes = getIncludes();
+            // honour any narrowing of the includes by subclasses
+            return includes != null ? namesOf(includes) : delegate.getIncludedNames();
+        }
     }
 
     /**
@@ -710,4 +871,720 @@ public abstract class SCMHeadObserver {
 
     }
 
+    /**
+     * A {@link SCMHeadObserver} that serializes access to the wrapped {@link SCMHeadObserver} so that it can be used
+     * from multiple threads at the same time.
+     *
+     * @param <O> the type of wrapped {@link SCMHeadObserver}
+     * @since FIXME
+     */
+    public static class Synchronized<O extends SCMHeadObserver> extends Wrapped<O> {
+
+        /**
+         * Constructor.
+         *
+         * @param delegate the {@link SCMHeadObserver} to wrap.
+         */
+        public Synchronized(O delegate) {
+            super(delegate);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized void observe(@NonNull SCMHead head, @NonNull SCMRevision revision)
+                throws IOException, InterruptedException {
+            super.observe(head, revision);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized boolean isObserving() {
+            return super.isObserving();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized Set<SCMHead> getIncludes() {
+            return super.getIncludes();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized Set<String> getIncludedNames() {
+            return super.getIncludedNames();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    /**
+     * Computes the union of the {@link #getIncludes()} of the supplied observers.
+     *
+     * @param observers the observers.
+     * @return the union or {@code null} if at least one of the observers is interested in everything.
+     */
+    @CheckForNull
+    private static Set<SCMHead> includesOf(SCMHeadObserver[] observers) {
+        Set<SCMHead> result = null;
+        for (SCMHeadObserver observer : observers) {
+            Set<SCMHead> includes = observer.getIncludes();
+            if (includes == null) {
+                // at least one of the observers is interested in everything, thus we are also
+                return null;
+            }
+            if (result == null) {
+                result = new HashSet<SCMHead>(includes);
+            } else {
+                result.addAll(includes);
+            }
+        }
+        return result == null ? null : Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Computes the union of the {@link #getIncludedNames()} of the supplied observers.
+     *
+     * @param observers the observers.
+     * @return the union or {@code null} if at least one of the observers is interested in everything.
+     */
+    @CheckForNull
+    private static Set<String> includedNamesOf(Iterable<SCMHeadObserver> observers) {
+        Set<String> result = null;
+        for (SCMHeadObserver observer : observers) {
+            Set<String> names = observer.getIncludedNames();
+            if (names == null) {
+                // at least one of the observers is interested in everything, thus we are also
+                return null;
+            }
+            if (result == null) {
+                result = new HashSet<String>(names);
+            } else {
+                result.addAll(names);
+            }
+        }
+        return result == null ? null : Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Returns the {@link SCMHead#getName()}s of the supplied heads.
+     *
+     * @param heads the heads (may be {@code null}).
+     * @return the names or {@code null} if the supplied heads were {@code null}.
+     */
+    @CheckForNull
+    private static Set<String> namesOf(@CheckForNull Set<SCMHead> heads) {
+        if (heads == null) {
+            return null;
+        }
+        Set<String> result = new HashSet<String>(heads.size());
+        for (SCMHead head : heads) {
+            result.add(head.getName());
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Makes each of the supplied observers thread-safe.
+     *
+     * @param observers the observers.
+     * @return the thread-safe observers.
+     */
+    @NonNull
+    private static SCMHeadObserver[] threadSafe(@NonNull Iterable<SCMHeadObserver> observers) {
+        List<SCMHeadObserver> result = new ArrayList<SCMHeadObserver>();
+        for (SCMHeadObserver observer : observers) {
+            result.add(observer.isThreadSafe() ? observer : synchronize(observer));
+        }
+        return result.toArray(new SCMHeadObserver[result.size()]);
+    }
+
+    /**
+     * A thread-safe observer that wraps multiple observers and keeps observing as long as one of the wrapped
+     * observers wants to. Wrapped observers that are not {@link #isThreadSafe()} are
+     * {@link #synchronize(SCMHeadObserver)}d individually. Once all the wrapped observers have stopped observing the
+     * result is latched so that polling {@link #isObserving()} from many threads is cheap.
+     *
+     * @since FIXME
+     */
+    public static class ConcurrentAllFinished extends SCMHeadObserver {
+        /**
+         * The wrapped observers.
+         */
+        @NonNull
+        private final SCMHeadObserver[] observers;
+        /**
+         * Set once all the wrapped observers have stopped observing.
+         */
+        private volatile boolean finished;
+        /**
+         * Our {@link #getIncludes()}.
+         */
+        private volatile Set<SCMHead> includes;
+        /**
+         * Flag to track initialization of {@link #includes}, written after {@link #includes}.
+         */
+        private volatile boolean includesPopulated;
+
+        /**
+         * Constructor.
+         *
+         * @param observers the observers to wrap.
+         */
+        public ConcurrentAllFinished(SCMHeadObserver... observers) {
+            this(Arrays.asList(observers));
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param observers the observers to wrap.
+         */
+        public ConcurrentAllFinished(@NonNull Iterable<SCMHeadObserver> observers) {
+            this.observers = threadSafe(observers);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision)
+                throws IOException, InterruptedException {
+            for (SCMHeadObserver observer : observers) {
+                if (observer.isObserving()) {
+                    observer.observe(head, revision);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isObserving() {
+            if (finished) {
+                return false;
+            }
+            for (SCMHeadObserver observer : observers) {
+                if (observer.isObserving()) {
+                    return true;
+                }
+            }
+            finished = true;
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<SCMHead> getIncludes() {
+            if (!includesPopulated) {
+                // racy but idempotent
+                includes = includesOf(observers);
+                includesPopulated = true;
+            }
+            return includes;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<String> getIncludedNames() {
+            return includedNamesOf(Arrays.asList(observers));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    /**
+     * A thread-safe observer that wraps multiple observers and keeps observing until one of the wrapped observers
+     * stops observing. Wrapped observers that are not {@link #isThreadSafe()} are
+     * {@link #synchronize(SCMHeadObserver)}d individually. Once one of the wrapped observers has stopped observing
+     * the result is latched so that polling {@link #isObserving()} from many threads is cheap.
+     *
+     * @since FIXME
+     */
+    public static class ConcurrentOneFinished extends SCMHeadObserver {
+        /**
+         * The wrapped observers.
+         */
+        @NonNull
+        private final SCMHeadObserver[] observers;
+        /**
+         * Set once one of the wrapped observers has stopped observing.
+         */
+        private volatile boolean finished;
+        /**
+         * Our {@link #getIncludes()}.
+         */
+        private volatile Set<SCMHead> includes;
+        /**
+         * Flag to track initialization of {@link #includes}, written after {@link #includes}.
+         */
+        private volatile boolean includesPopulated;
+
+        /**
+         * Constructor.
+         *
+         * @param observers the observers to wrap.
+         */
+        public ConcurrentOneFinished(SCMHeadObserver... observers) {
+            this(Arrays.asList(observers));
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param observers the observers to wrap.
+         */
+        public ConcurrentOneFinished(@NonNull Iterable<SCMHeadObserver> observers) {
+            this.observers = threadSafe(observers);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision)
+                throws IOException, InterruptedException {
+            if (finished) {
+                // another thread has already seen one of the wrapped observers stop
+                return;
+            }
+            for (SCMHeadObserver observer : observers) {
+                if (observer.isObserving()) {
+                    observer.observe(head, revision);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isObserving() {
+            if (finished) {
+                return false;
+            }
+            for (SCMHeadObserver observer : observers) {
+                if (!observer.isObserving()) {
+                    finished = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<SCMHead> getIncludes() {
+            if (!includesPopulated) {
+                // racy but idempotent
+                includes = includesOf(observers);
+                includesPopulated = true;
+            }
+            return includes;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<String> getIncludedNames() {
+            return includedNamesOf(Arrays.asList(observers));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    /**
+     * A thread-safe observer that collects the observed {@link SCMHead}s and {@link SCMRevision}s.
+     *
+     * @since FIXME
+     */
+    public static class ConcurrentCollector extends SCMHeadObserver {
+        /**
+         * The collected results.
+         */
+        @NonNull
+        private final ConcurrentNavigableMap<SCMHead, SCMRevision> result =
+                new ConcurrentSkipListMap<SCMHead, SCMRevision>();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision) {
+            result.put(head, revision);
+        }
+
+        /**
+         * Returns the collected results, sorted in the same order as {@link Collector#result()}.
+         *
+         * @return the collected results.
+         */
+        @NonNull
+        public Map<SCMHead, SCMRevision> result() {
+            return result;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    /**
+     * A thread-safe {@link SCMHeadObserver} that filters the {@link SCMHead} instances that will be observed by the
+     * wrapped {@link SCMHeadObserver}. Calls to a wrapped observer that is not {@link #isThreadSafe()} are serialized.
+     *
+     * @param <O> the type of wrapped {@link SCMHeadObserver}
+     * @since FIXME
+     */
+    public static class ConcurrentFilter<O extends SCMHeadObserver> extends Wrapped<O> {
+        /**
+         * The {@link SCMHead} instances that we are including.
+         */
+        private final Set<SCMHead> heads;
+        /**
+         * The {@link SCMHead} instances we have yet to observe.
+         */
+        private final ConcurrentMap<SCMHead, Boolean> remaining;
+        /**
+         * The number of entries in {@link #remaining} so that {@link #isObserving()} is cheap to poll.
+         */
+        private final AtomicInteger remainingCount;
+        /**
+         * {@code true} if calls to the wrapped observer need to be serialized.
+         */
+        private final boolean serialize;
+
+        /**
+         * Constructor.
+         *
+         * @param delegate The {@link SCMHeadObserver} to wrap.
+         * @param heads    The {@link SCMHead} instances that my be observed by the wrapped {@link SCMHeadObserver}.
+         */
+        public ConcurrentFilter(O delegate, SCMHead... heads) {
+            super(delegate);
+            this.serialize = !delegate.isThreadSafe();
+            Set<SCMHead> included = new HashSet<SCMHead>(Arrays.asList(heads));
+            Set<SCMHead> includes = super.getIncludes();
+            if (includes != null) {
+                included.retainAll(includes);
+            }
+            this.heads = Collections.unmodifiableSet(included);
+            this.remaining = new ConcurrentHashMap<SCMHead, Boolean>();
+            for (SCMHead head : included) {
+                remaining.put(head, Boolean.TRUE);
+            }
+            this.remainingCount = new AtomicInteger(included.size());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision)
+                throws IOException, InterruptedException {
+            if (remaining.remove(head) != null) {
+                remainingCount.decrementAndGet();
+                if (serialize) {
+                    synchronized (this) {
+                        super.observe(head, revision);
+                    }
+                } else {
+                    super.observe(head, revision);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isObserving() {
+            if (remainingCount.get() <= 0) {
+                return false;
+            }
+            if (serialize) {
+                synchronized (this) {
+                    return super.isObserving();
+                }
+            }
+            return super.isObserving();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<SCMHead> getIncludes() {
+            return heads;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    /**
+     * A thread-safe observer that hands off the observed {@link SCMHead}s and {@link SCMRevision}s to a consumer
+     * through a bounded queue. This allows the consumer to start processing heads before the scan has completed
+     * without ever holding the full result in memory.
+     * <p>
+     * The producer is expected to call {@link #close()} once the scan has completed (typically in a {@code finally}
+     * block) so that the consumer will see the end of the stream. The consumer may call {@link #cancel()} to stop the
+     * scan early. For example:
+     * <pre>
+     * final SCMHeadObserver.Streaming observer = SCMHeadObserver.stream(100);
+     * executor.submit(new Callable&lt;Void&gt;() {
+     *     public Void call() throws Exception {
+     *         try {
+     *             source.fetch(observer, listener);
+     *         } finally {
+     *             observer.close();
+     *         }
+     *         return null;
+     *     }
+     * });
+     * for (Map.Entry&lt;SCMHead, SCMRevision&gt; entry = observer.take(); entry != null; entry = observer.take()) {
+     *     // process the entry
+     * }
+     * </pre>
+     *
+     * @since FIXME
+     */
+    public static class Streaming extends SCMHeadObserver {
+        /**
+         * Marker for the end of the stream.
+         */
+        private static final Map.Entry<SCMHead, SCMRevision> END =
+                new AbstractMap.SimpleImmutableEntry<SCMHead, SCMRevision>(null, null);
+        /**
+         * The entries waiting to be consumed.
+         */
+        @NonNull
+        @GuardedBy("queue")
+        private final Queue<Map.Entry<SCMHead, SCMRevision>> queue;
+        /**
+         * The maximum number of entries waiting to be consumed.
+         */
+        private final int capacity;
+        /**
+         * Set once the producer has finished.
+         */
+        private volatile boolean closed;
+        /**
+         * Set once the consumer has lost interest.
+         */
+        private volatile boolean cancelled;
+        /**
+         * Set once the consumer has seen the end of the stream.
+         */
+        private volatile boolean drained;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity the maximum number of heads that can be pending consumption.
+         */
+        public Streaming(int capacity) {
+            this.capacity = Math.max(1, capacity);
+            this.queue = new ArrayDeque<Map.Entry<SCMHead, SCMRevision>>(this.capacity + 1);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision)
+                throws IOException, InterruptedException {
+            Map.Entry<SCMHead, SCMRevision> entry = new AbstractMap.SimpleImmutableEntry<SCMHead, SCMRevision>(
+                    head, revision
+            );
+            synchronized (queue) {
+                // back-pressure: wait for the consumer to catch up, the stream may be closed or cancelled meanwhile
+                // so the state is checked after every wait and nothing is ever added after the end of the stream
+                while (!closed && !cancelled && queue.size() >= capacity) {
+                    queue.wait();
+                }
+                if (closed) {
+                    throw new IllegalStateException("Stream has been closed");
+                }
+                if (cancelled) {
+                    return;
+                }
+                queue.add(entry);
+                queue.notifyAll();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isObserving() {
+            return !cancelled && !closed;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
+        /**
+         * Signals the end of the stream. Called by the producer once the scan has completed, irrespective of whether
+         * the scan was successful or not.
+         */
+        public void close() {
+            synchronized (queue) {
+                if (!closed) {
+                    closed = true;
+                    queue.add(END);
+                    queue.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Signals that the consumer is no longer interested in the stream. Any pending entries are discarded and the
+         * producer will be unblocked.
+         */
+        public void cancel() {
+            synchronized (queue) {
+                cancelled = true;
+                queue.clear();
+                if (closed) {
+                    queue.add(END);
+                }
+                queue.notifyAll();
+            }
+        }
+
+        /**
+         * Returns {@code true} if the stream has been cancelled by the consumer.
+         *
+         * @return {@code true} if the stream has been cancelled by the consumer.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Retrieves the next entry, waiting if necessary until one is available.
+         *
+         * @return the next entry or {@code null} if the end of the stream has been reached.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        @CheckForNull
+        public Map.Entry<SCMHead, SCMRevision> take() throws InterruptedException {
+            synchronized (queue) {
+                while (true) {
+                    Map.Entry<SCMHead, SCMRevision> entry = next();
+                    if (entry != null || drained || cancelled) {
+                        return entry;
+                    }
+                    queue.wait();
+                }
+            }
+        }
+
+        /**
+         * Retrieves the next entry, waiting up to the specified wait time if necessary for one to become available.
+         *
+         * @param timeout how long to wait before giving up.
+         * @param unit    the units of {@code timeout}.
+         * @return the next entry or {@code null} if the end of the stream has been reached or the specified waiting
+         * time elapses before an entry is available (use {@link #isDrained()} to tell the two apart).
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        @CheckForNull
+        public Map.Entry<SCMHead, SCMRevision> poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            long deadline = System.nanoTime() + nanos;
+            synchronized (queue) {
+                while (true) {
+                    Map.Entry<SCMHead, SCMRevision> entry = next();
+                    if (entry != null || drained || cancelled || nanos <= 0L) {
+                        return entry;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(queue, nanos);
+                    nanos = deadline - System.nanoTime();
+                }
+            }
+        }
+
+        /**
+         * Returns {@code true} once the consumer has reached the end of the stream.
+         *
+         * @return {@code true} once the consumer has reached the end of the stream.
+         */
+        public boolean isDrained() {
+            return drained;
+        }
+
+        /**
+         * Removes the next entry from the queue, waking up a blocked producer.
+         *
+         * @return the next entry or {@code null} if there is no entry available or the end has been reached.
+         */
+        @GuardedBy("queue")
+        @CheckForNull
+        private Map.Entry<SCMHead, SCMRevision> next() {
+            if (drained) {
+                return null;
+            }
+            Map.Entry<SCMHead, SCMRevision> entry = queue.poll();
+            if (entry == null) {
+                return null;
+            }
+            queue.notifyAll();
+            if (entry == END) {
+                drained = true;
+                return null;
+            }
+            return entry;
+        }
+    }
+
 }
@@ -381,4 +381,17 @@ public abstract class SCMNavigator extends AbstractDescribableImpl<SCMNavigator>
     public void afterSave(@NonNull SCMNavigatorOwner owner) {
     }
 
+    /**
+     * Returns the URL of the server that this navigator is for, as reported by {@link SCMEvent#getServerUrl()} for
+     * events concerning this navigator, so that events can be routed to the owner of this navigator without testing
+     * every {@link SCMNavigatorOwner}. The URL is compared after {@link SCMUri#normalize(String)}.
+     *
+     * @return the server URL or {@code null} if events for this navigator can come from any server.
+     * @since FIXME
+     */
+    @CheckForNull
+    public String getEventServerUrl() {
+        return null;
+    }
+
 }
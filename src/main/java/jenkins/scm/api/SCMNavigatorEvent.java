@@ -28,6 +28,7 @@ package jenkins.scm.api;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.ExtensionList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -110,7 +111,19 @@ public abstract class SCMNavigatorEvent<P> extends SCMEvent<P> {
      * @param event the event to fire.
      */
     public static void fireNow(@NonNull final SCMNavigatorEvent<?> event) {
-        executorService().execute(new DispatcherImpl(event));
+        tryFireNow(event);
+    }
+
+    /**
+     * Fires the {@link SCMNavigatorEvent} to all registered {@link SCMEventListener} instances unless the event
+     * dispatch queue is saturated and configured to shed events.
+     *
+     * @param event the event to fire.
+     * @return {@code true} if the event was accepted for dispatch, {@code false} if it was shed.
+     * @since FIXME
+     */
+    public static boolean tryFireNow(@NonNull final SCMNavigatorEvent<?> event) {
+        return dispatch(new DispatcherImpl(event));
     }
 
     /**
@@ -121,7 +134,7 @@ public abstract class SCMNavigatorEvent<P> extends SCMEvent<P> {
      * @param delayUnits the units of time in which the delay is expressed.
      */
     public static void fireLater(@NonNull final SCMNavigatorEvent<?> event, long delay, TimeUnit delayUnits) {
-        executorService().schedule(new DispatcherImpl(event), delay, delayUnits);
+        schedule(new DispatcherImpl(event), event, delay, delayUnits);
     }
 
     private static class DispatcherImpl extends SCMEvent.Dispatcher<SCMNavigatorEvent<?>> {
@@ -143,5 +156,10 @@ public abstract class SCMNavigatorEvent<P> extends SCMEvent<P> {
         protected void fire(SCMEventListener l, SCMNavigatorEvent<?> event) {
             l.onSCMNavigatorEvent(event);
         }
+
+        @Override
+        protected void fireBatch(SCMEventListener l, List<SCMNavigatorEvent<?>> events) {
+            l.onSCMNavigatorEvents(events);
+        }
     }
 }
@@ -31,6 +31,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import jenkins.model.Jenkins;
+import jenkins.scm.impl.events.SCMEventOwnerIndex;
 
 /**
  * Provides a means to lookup the {@link SCMNavigatorOwners} that own {@link SCMNavigatorOwner} instances.
@@ -49,6 +50,21 @@ public abstract class SCMNavigatorOwners implements ExtensionPoint, Iterable<SCM
         return new All();
     }
 
+    /**
+     * Lookup the {@link SCMNavigatorOwner} instances that may own a {@link SCMNavigator} concerned by the supplied
+     * event. The result is a superset of the owners concerned, callers must still check each navigator (e.g. with
+     * {@link SCMHeadEvent#isMatch(SCMNavigator)}), but it avoids walking every owner when the navigators provide
+     * {@link SCMNavigator#getEventServerUrl()} and the event provides {@link SCMEvent#getServerUrl()}.
+     *
+     * @param event the event.
+     * @return the candidate {@link SCMNavigatorOwner} instances.
+     * @since FIXME
+     */
+    @NonNull
+    public static Iterable<SCMNavigatorOwner> candidates(@NonNull SCMEvent<?> event) {
+        return SCMEventOwnerIndex.get().navigatorOwners(event.getServerUrl());
+    }
+
     /**
      * Extension point to allow for access to embedded {@link SCMSourceOwner} instances that
      * {@link SCMNavigatorOwners.JenkinsItemEnumerator} will not find.
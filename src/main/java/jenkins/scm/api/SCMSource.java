@@ -89,6 +89,13 @@ public abstract class SCMSource extends AbstractDescribableImpl<SCMSource>
      * @since 2.0
      */
     private static final ThreadLocal<SCMSourceCriteria> compatibilityHack = new ThreadLocal<SCMSourceCriteria>();
+    /**
+     * The parallelism hint of the {@link #retrieve(SCMSourceCriteria, SCMHeadObserver, SCMHeadEvent, TaskListener)}
+     * running on the current thread, see {@link #getRetrieveParallelism()}.
+     *
+     * @since FIXME
+     */
+    private static final ThreadLocal<Integer> retrieveParallelism = new ThreadLocal<Integer>();
     /**
      * A special marker value used by {@link #getCriteria()} and stored in {@link #compatibilityHack} to signal
      * that {@link #getCriteria()} should return {@code null}.
@@ -229,6 +236,23 @@ public abstract class SCMSource extends AbstractDescribableImpl<SCMSource>
         return owner;
     }
 
+    /**
+     * Returns the maximum number of heads that the
+     * {@link #retrieve(SCMSourceCriteria, SCMHeadObserver, SCMHeadEvent, TaskListener)} running on the current thread
+     * may process concurrently. When greater than {@code 1} the observer passed to {@code retrieve} is
+     * {@link SCMHeadObserver#isThreadSafe()} and the {@code process} methods of the
+     * {@link jenkins.scm.api.trait.SCMSourceRequest} may be called from up to that many worker threads. Must be called
+     * from the thread that invoked {@code retrieve}.
+     *
+     * @return the parallelism hint, {@code 1} unless the caller used
+     * {@link #fetch(SCMSourceCriteria, SCMHeadObserver, SCMHeadEvent, TaskListener, int)}.
+     * @since FIXME
+     */
+    protected final int getRetrieveParallelism() {
+        Integer parallelism = retrieveParallelism.get();
+        return parallelism == null ? 1 : parallelism;
+    }
+
     /**
      * Returns the branch criteria.
      *
@@ -332,6 +356,37 @@ public abstract class SCMSource extends AbstractDescribableImpl<SCMSource>
         return observer;
     }
 
+    /**
+     * Fetches the latest heads and corresponding revisions scoped against a specific event, allowing the
+     * implementation to process up to {@code parallelism} heads concurrently (see {@link #getRetrieveParallelism()}).
+     * When {@code parallelism} is greater than {@code 1} and the observer is not
+     * {@link SCMHeadObserver#isThreadSafe()} the observer will be {@link SCMHeadObserver#synchronize(SCMHeadObserver)
+     * synchronized}. Implementations are not required to honour the hint.
+     *
+     * @param <O> Observer type.
+     * @param criteria the criteria to use.
+     * @param observer an observer of interim results.
+     * @param event the (optional) event from which the fetch should be scoped.
+     * @param listener the task listener
+     * @param parallelism the maximum number of heads to process concurrently.
+     * @return the provided observer.
+     * @throws IOException if an error occurs while performing the operation.
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     * @since FIXME
+     */
+    @NonNull
+    public final <O extends SCMHeadObserver> O fetch(@CheckForNull SCMSourceCriteria criteria,
+                                                     @NonNull O observer, @CheckForNull SCMHeadEvent<?> event,
+                                                     @CheckForNull TaskListener listener, int parallelism)
+            throws IOException, InterruptedException {
+        SCMHeadObserver o = event == null ? observer : event.filter(this, observer);
+        if (parallelism > 1 && !o.isThreadSafe()) {
+            o = SCMHeadObserver.synchronize(o);
+        }
+        _retrieve(criteria, o, event, defaultListener(listener), Math.max(1, parallelism));
+        return observer;
+    }
+
     /**
      * Fetches the latest heads and corresponding revisions. Implementers are free to cache intermediary results
      * but the call must always check the validity of any intermediary caches.
@@ -343,12 +398,66 @@ public abstract class SCMSource extends AbstractDescribableImpl<SCMSource>
      * @throws IOException if an error occurs while performing the operation.
      * @throws InterruptedException if any thread has interrupted the current thread.
      */
-    @SuppressWarnings("deprecation")
     private void _retrieve(@CheckForNull SCMSourceCriteria criteria,
                            @NonNull SCMHeadObserver observer,
                            @CheckForNull SCMHeadEvent<?> event,
                            @CheckForNull TaskListener listener)
             throws IOException, InterruptedException {
+        _retrieve(criteria, observer, event, listener, 1);
+    }
+
+    /**
+     * Fetches the latest heads and corresponding revisions with the supplied parallelism hint.
+     *
+     * @param criteria the (optional) criteria.
+     * @param observer an observer of interim results, must be {@link SCMHeadObserver#isThreadSafe()} if
+     *                 {@code parallelism} is greater than {@code 1}.
+     * @param event the (optional) event from which the operation should be scoped.
+     * @param listener the task listener.
+     * @param parallelism the parallelism hint.
+     * @throws IOException if an error occurs while performing the operation.
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     */
+    private void _retrieve(@CheckForNull SCMSourceCriteria criteria,
+                           @NonNull SCMHeadObserver observer,
+                           @CheckForNull SCMHeadEvent<?> event,
+                           @CheckForNull TaskListener listener,
+                           int parallelism)
+            throws IOException, InterruptedException {
+        Integer previous = retrieveParallelism.get();
+        if (parallelism > 1) {
+            retrieveParallelism.set(parallelism);
+        } else {
+            // a nested fetch must not inherit the hint of an enclosing fetch
+            retrieveParallelism.remove();
+        }
+        try {
+            doRetrieve(criteria, observer, event, listener);
+        } finally {
+            if (previous != null) {
+                retrieveParallelism.set(previous);
+            } else {
+                retrieveParallelism.remove();
+            }
+        }
+    }
+
+    /**
+     * Dispatches to the most specific {@code retrieve} method that the implementation overrides.
+     *
+     * @param criteria the (optional) criteria.
+     * @param observer an observer of interim results.
+     * @param event the (optional) event from which the operation should be scoped.
+     * @param listener the task listener.
+     * @throws IOException if an error occurs while performing the operation.
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     */
+    @SuppressWarnings("deprecation")
+    private void doRetrieve(@CheckForNull SCMSourceCriteria criteria,
+                            @NonNull SCMHeadObserver observer,
+                            @CheckForNull SCMHeadEvent<?> event,
+                            @CheckForNull TaskListener listener)
+            throws IOException, InterruptedException {
         if (MethodUtils.isOverridden(SCMSource.class, getClass(), "retrieve",
                 SCMSourceCriteria.class, SCMHeadObserver.class, SCMHeadEvent.class, TaskListener.class)) {
             // w00t this is a new implementation
@@ -463,6 +572,87 @@ public abstract class SCMSource extends AbstractDescribableImpl<SCMSource>
                             @NonNull TaskListener listener)
             throws IOException, InterruptedException;
 
+    /**
+     * Fetches the heads that have changed since a checkpoint returned by a previous call. The heads created or updated
+     * since the checkpoint are passed to the observer and the heads removed since the checkpoint are reported in the
+     * result. When no checkpoint is supplied, or the implementation does not support incremental retrieval, or the
+     * checkpoint can no longer be used, a full retrieve is performed instead and the result is
+     * {@link SCMHeadChanges#isFull()}.
+     *
+     * @param criteria   the criteria to use.
+     * @param observer   an observer of the created and updated heads.
+     * @param checkpoint the (optional) opaque checkpoint from the {@link SCMHeadChanges#getCheckpoint()} of a
+     *                   previous call for this source.
+     * @param listener   the task listener
+     * @return the removed heads and the checkpoint for the next call.
+     * @throws IOException if an error occurs while performing the operation.
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     * @since FIXME
+     */
+    @NonNull
+    public final SCMHeadChanges fetchChanges(@CheckForNull SCMSourceCriteria criteria,
+                                             @NonNull SCMHeadObserver observer, @CheckForNull String checkpoint,
+                                             @CheckForNull TaskListener listener)
+            throws IOException, InterruptedException {
+        listener = defaultListener(listener);
+        if (checkpoint != null) {
+            SCMHeadChanges changes = retrieveChanges(criteria, observer, checkpoint, listener);
+            if (changes != null) {
+                return changes;
+            }
+        }
+        // take the checkpoint before the full retrieve so that changes made during the retrieve are not missed
+        String next = checkpoint(listener);
+        _retrieve(criteria, observer, null, listener);
+        return SCMHeadChanges.full(next);
+    }
+
+    /**
+     * SPI: Fetches the heads that have changed since a checkpoint previously returned by this implementation. The
+     * created and updated heads must be passed to the observer (after filtering against the criteria in the same way
+     * as {@link #retrieve(SCMSourceCriteria, SCMHeadObserver, SCMHeadEvent, TaskListener)}) and the removed heads
+     * (including heads that no longer meet the criteria) returned in
+     * {@link SCMHeadChanges#incremental(Set, String)}.
+     * <p>
+     * Implementations that cannot use the checkpoint (for example because it has expired) must return {@code null}
+     * <strong>before</strong> observing anything, in which case a full retrieve will be performed. The default
+     * implementation always returns {@code null}.
+     *
+     * @param criteria   the criteria to use.
+     * @param observer   an observer of the created and updated heads.
+     * @param checkpoint the checkpoint returned by {@link #checkpoint(TaskListener)} or a previous call to this
+     *                   method.
+     * @param listener   the task listener.
+     * @return the changes or {@code null} to fall back to a full retrieve.
+     * @throws IOException if an error occurs while performing the operation.
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     * @since FIXME
+     */
+    @CheckForNull
+    protected SCMHeadChanges retrieveChanges(@CheckForNull SCMSourceCriteria criteria,
+                                             @NonNull SCMHeadObserver observer, @NonNull String checkpoint,
+                                             @NonNull TaskListener listener)
+            throws IOException, InterruptedException {
+        return null;
+    }
+
+    /**
+     * SPI: Returns an opaque checkpoint of the current state of the source, which will be passed to
+     * {@link #retrieveChanges(SCMSourceCriteria, SCMHeadObserver, String, TaskListener)} on the next incremental
+     * fetch. Called immediately before a full retrieve. The default implementation returns {@code null} as it does
+     * not support incremental retrieval.
+     *
+     * @param listener the task listener.
+     * @return the checkpoint or {@code null} if incremental retrieval is not supported.
+     * @throws IOException if an error occurs while performing the operation.
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     * @since FIXME
+     */
+    @CheckForNull
+    protected String checkpoint(@NonNull TaskListener listener) throws IOException, InterruptedException {
+        return null;
+    }
+
     /**
      * Fetches the current list of heads. Implementers are free to cache intermediary results
      * but the call must always check the validity of any intermediary caches.
@@ -1125,6 +1315,34 @@ public abstract class SCMSource extends AbstractDescribableImpl<SCMSource>
      */
     public void afterSave() {}
 
+    /**
+     * Returns the name that {@link SCMHeadEvent#getSourceName()} and {@link SCMSourceEvent#getSourceName()} will
+     * have for events concerning this source, so that events can be routed to the owner of this source without
+     * testing every {@link SCMSourceOwner}. Implementations must only return a name if every event that could
+     * {@link SCMHeadEvent#isMatch(SCMSource)} this source will report that name.
+     *
+     * @return the source name or {@code null} if events for this source cannot be indexed by name.
+     * @see #getEventServerUrl()
+     * @since FIXME
+     */
+    @CheckForNull
+    public String getEventSourceName() {
+        return null;
+    }
+
+    /**
+     * Returns the URL of the server that this source is for, as reported by {@link SCMEvent#getServerUrl()} for
+     * events concerning this source. The URL is compared after {@link SCMUri#normalize(String)}. Only consulted
+     * when {@link #getEventSourceName()} is not {@code null}.
+     *
+     * @return the server URL or {@code null} if events for this source can come from any server.
+     * @since FIXME
+     */
+    @CheckForNull
+    public String getEventServerUrl() {
+        return null;
+    }
+
     /**
      * Means of locating a head given an item.
      *
@@ -29,6 +29,7 @@ import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.ExtensionList;
 import hudson.model.Item;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -145,7 +146,19 @@ public abstract class SCMSourceEvent<P> extends SCMEvent<P> {
      * @param event the event to fire.
      */
     public static void fireNow(@NonNull final SCMSourceEvent<?> event) {
-        executorService().execute(new DispatcherImpl(event));
+        tryFireNow(event);
+    }
+
+    /**
+     * Fires the {@link SCMSourceEvent} to all registered {@link SCMEventListener} instances unless the event dispatch
+     * queue is saturated and configured to shed events.
+     *
+     * @param event the event to fire.
+     * @return {@code true} if the event was accepted for dispatch, {@code false} if it was shed.
+     * @since FIXME
+     */
+    public static boolean tryFireNow(@NonNull final SCMSourceEvent<?> event) {
+        return dispatch(new DispatcherImpl(event));
     }
 
     /**
@@ -156,7 +169,7 @@ public abstract class SCMSourceEvent<P> extends SCMEvent<P> {
      * @param delayUnits the units of time in which the delay is expressed.
      */
     public static void fireLater(@NonNull final SCMSourceEvent<?> event, long delay, TimeUnit delayUnits) {
-        executorService().schedule(new DispatcherImpl(event), delay, delayUnits);
+        schedule(new DispatcherImpl(event), event, delay, delayUnits);
     }
 
     private static class DispatcherImpl extends SCMEvent.Dispatcher<SCMSourceEvent<?>> {
@@ -178,5 +191,10 @@ public abstract class SCMSourceEvent<P> extends SCMEvent<P> {
         protected void fire(SCMEventListener l, SCMSourceEvent<?> event) {
             l.onSCMSourceEvent(event);
         }
+
+        @Override
+        protected void fireBatch(SCMEventListener l, List<SCMSourceEvent<?>> events) {
+            l.onSCMSourceEvents(events);
+        }
     }
 }
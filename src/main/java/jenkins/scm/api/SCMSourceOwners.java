@@ -28,6 +28,7 @@ import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.ExtensionPoint;
 import jenkins.model.Jenkins;
+import jenkins.scm.impl.events.SCMEventOwnerIndex;
 
 import java.util.Collection;
 import java.util.Iterator;
@@ -49,6 +50,36 @@ public abstract class SCMSourceOwners implements ExtensionPoint, Iterable<SCMSou
         return new All();
     }
 
+    /**
+     * Lookup the {@link SCMSourceOwner} instances that may own a {@link SCMSource} concerned by the supplied event.
+     * The result is a superset of the owners concerned, callers must still check each source with
+     * {@link SCMHeadEvent#isMatch(SCMSource)}, but it avoids walking every owner when the sources provide
+     * {@link SCMSource#getEventSourceName()}.
+     *
+     * @param event the event.
+     * @return the candidate {@link SCMSourceOwner} instances.
+     * @since FIXME
+     */
+    @NonNull
+    public static Iterable<SCMSourceOwner> candidates(@NonNull SCMHeadEvent<?> event) {
+        return SCMEventOwnerIndex.get().sourceOwners(event.getSourceName(), event.getServerUrl());
+    }
+
+    /**
+     * Lookup the {@link SCMSourceOwner} instances that may own a {@link SCMSource} concerned by the supplied event.
+     * The result is a superset of the owners concerned, callers must still check each source with
+     * {@link SCMSourceEvent#isMatch(SCMSource)}, but it avoids walking every owner when the sources provide
+     * {@link SCMSource#getEventSourceName()}.
+     *
+     * @param event the event.
+     * @return the candidate {@link SCMSourceOwner} instances.
+     * @since FIXME
+     */
+    @NonNull
+    public static Iterable<SCMSourceOwner> candidates(@NonNull SCMSourceEvent<?> event) {
+        return SCMEventOwnerIndex.get().sourceOwners(event.getSourceName(), event.getServerUrl());
+    }
+
     /**
      * Extension point to allow for access to embedded {@link SCMSourceOwner} instances that
      * {@link SCMSourceOwners.JenkinsItemEnumerator} will not find.
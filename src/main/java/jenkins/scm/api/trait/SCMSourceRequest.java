@@ -48,10 +48,23 @@ import jenkins.scm.api.SCMSource;
 import jenkins.scm.api.SCMSourceCriteria;
 import jenkins.scm.api.mixin.ChangeRequestSCMHead2;
 import jenkins.scm.api.mixin.SCMHeadMixin;
+import net.jcip.annotations.GuardedBy;
 
 /**
  * Represents the context of an individual request for a call to
  * {@link SCMSource#retrieve(SCMSourceCriteria, SCMHeadObserver, SCMHeadEvent, TaskListener)} or an equivalent method.
+ * <p>
+ * When the {@link SCMHeadObserver} of the request is {@link SCMHeadObserver#isThreadSafe()} (which is always the case
+ * when the {@link SCMSource} has been asked to retrieve with a parallelism hint greater than {@code 1}) the
+ * {@code process} methods, {@link #isExcluded(SCMHead)}, {@link #isTrusted(SCMHead)}, {@link #isComplete()} and
+ * {@link #manage(Closeable)} may be called concurrently from worker threads, provided the supplied lambdas,
+ * {@link Witness} instances and the configured filters, authorities and criteria are themselves thread-safe. The
+ * request must still only be {@link #close()}d once all the worker threads have finished with it.
+ * <p>
+ * When the request {@link #isTargeted()} the {@link SCMHeadObserver} is only interested in a known set of heads,
+ * for example when validating the heads of a {@link SCMHeadEvent}, and implementations should fetch just the
+ * {@link #includedNames()} heads rather than listing every head only to have {@link #isExcluded(SCMHead)} discard
+ * them.
  *
  * @since 2.2.0
  */
@@ -108,11 +121,18 @@ public abstract class SCMSourceRequest implements Closeable {
     @CheckForNull
     private final Set<SCMHead> observerIncludes;
 
+    /**
+     * The {@link SCMHeadObserver#getIncludedNames()} of {@link #observer}.
+     */
+    @CheckForNull
+    private final Set<String> observerIncludedNames;
+
     /**
      * Any {@link Closeable} objects that should be closed with the request.
      */
     // TODO widen type to AutoClosable once Java 7+
     @NonNull
+    @GuardedBy("managedClosables")
     private final List<Closeable> managedClosables = new ArrayList<Closeable>();
 
     /**
@@ -133,6 +153,7 @@ public abstract class SCMSourceRequest implements Closeable {
                 : Collections.unmodifiableList(new ArrayList<SCMSourceCriteria>(context.criteria()));
         this.observer = context.observer();
         this.observerIncludes = observer.getIncludes();
+        this.observerIncludedNames = observer.getIncludedNames();
         this.listener = defaultListener(listener);
     }
 
@@ -184,6 +205,9 @@ public abstract class SCMSourceRequest implements Closeable {
         if (observerIncludes != null && !observerIncludes.contains(head)) {
             return true;
         }
+        if (observerIncludedNames != null && !observerIncludedNames.contains(head.getName())) {
+            return true;
+        }
         if (!prefilters.isEmpty()) {
             for (SCMHeadPrefilter prefilter : prefilters) {
                 if (prefilter.isExcluded(source, head)) {
@@ -202,6 +226,66 @@ public abstract class SCMSourceRequest implements Closeable {
         return false;
     }
 
+    /**
+     * Returns {@code true} if the {@link SCMHeadObserver} of this request is only interested in a known set of heads,
+     * in which case implementations should fetch only the {@link #includedNames()} heads.
+     *
+     * @return {@code true} if this request is targeted at a known set of heads.
+     * @since FIXME
+     */
+    public final boolean isTargeted() {
+        return observerIncludedNames != null;
+    }
+
+    /**
+     * Returns the {@link SCMHead} instances that the {@link SCMHeadObserver} of this request is interested in.
+     *
+     * @return the {@link SCMHead} instances that the request is interested in or {@code null} if either interested in
+     * all heads or the interest can only be expressed by {@link #includedNames()}.
+     * @see SCMHeadObserver#getIncludes()
+     * @since FIXME
+     */
+    @CheckForNull
+    public final Set<SCMHead> includes() {
+        return observerIncludes;
+    }
+
+    /**
+     * Returns the {@link SCMHead#getName()}s of the heads that the {@link SCMHeadObserver} of this request is
+     * interested in. Implementations can use this to fetch each named head directly, for example:
+     * <pre>
+     * Set&lt;String&gt; names = request.includedNames();
+     * if (names != null) {
+     *     for (String name : names) {
+     *         // fetch just this branch with a single remote call
+     *     }
+     * } else {
+     *     // list all the branches
+     * }
+     * </pre>
+     *
+     * @return the names of the heads that the request is interested in or {@code null} if interested in all heads.
+     * @see SCMHeadObserver#getIncludedNames()
+     * @since FIXME
+     */
+    @CheckForNull
+    public final Set<String> includedNames() {
+        return observerIncludedNames;
+    }
+
+    /**
+     * Tests if the {@link SCMHead} with the supplied name is excluded by the {@link SCMHeadObserver} of this request.
+     * This is a cheap check that implementations can make before constructing the {@link SCMHead} or making any remote
+     * calls. Passing this check does not mean that the head will not be {@link #isExcluded(SCMHead)}.
+     *
+     * @param name the {@link SCMHead#getName()}.
+     * @return {@code true} if the request is not interested in the named head.
+     * @since FIXME
+     */
+    public final boolean isExcludedName(@NonNull String name) {
+        return observerIncludedNames != null && !observerIncludedNames.contains(name);
+    }
+
     /**
      * Tests if the {@link SCMHead} is trusted.
      *
@@ -387,7 +471,9 @@ public abstract class SCMSourceRequest implements Closeable {
      */
     public void manage(@CheckForNull Closeable closeable) {
         if (closeable != null) {
-            managedClosables.add(closeable);
+            synchronized (managedClosables) {
+                managedClosables.add(closeable);
+            }
         }
     }
 
@@ -397,7 +483,11 @@ public abstract class SCMSourceRequest implements Closeable {
     @Override
     public void close() throws IOException {
         IOException ioe = null;
-        for (Closeable c : managedClosables) {
+        List<Closeable> closeables;
+        synchronized (managedClosables) {
+            closeables = new ArrayList<Closeable>(managedClosables);
+        }
+        for (Closeable c : closeables) {
             try {
                 c.close();
             } catch (IOException e) {
@@ -25,6 +25,7 @@
 
 package jenkins.scm.impl;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.XmlFile;
@@ -32,16 +33,84 @@ import hudson.model.Item;
 import hudson.model.Saveable;
 import hudson.model.listeners.SaveableListener;
 import hudson.scm.SCM;
+import hudson.security.ACL;
 import hudson.triggers.SCMTrigger;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
 import jenkins.scm.api.SCM2;
 import jenkins.triggers.SCMTriggerItem;
+import org.acegisecurity.Authentication;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
 /**
- * This class is responsible for firing the {@link jenkins.scm.api.SCM2#afterSave(SCMTriggerItem)} event.
+ * This class is responsible for firing the {@link jenkins.scm.api.SCM2#afterSave(SCMTriggerItem)} event and for
+ * discarding the actions cached by {@link SCM2TransientActionFactory} when an item is saved.
+ * <p>
+ * As {@link SCM2#afterSave(SCMTriggerItem)} typically makes remote calls (e.g. to register a webhook) it is run on a
+ * small pool of threads (sized by the {@code jenkins.scm.impl.SCM2Notifier.threads} system property, default 2) with
+ * the authentication of the thread that saved the item, rather than inside the save. Repeated saves of an item that
+ * is still waiting for its callback are coalesced, the callback always sees the latest configuration, so the queue
+ * (bounded by the {@code jenkins.scm.impl.SCM2Notifier.queueCapacity} system property, default 10000) holds at most
+ * one callback per item. Set the {@code jenkins.scm.impl.SCM2Notifier.synchronous} system property to {@code true}
+ * to run the callback inside the save again, with any {@link RuntimeException} propagating to the save. The
+ * progress is reported by {@link #getStats()}.
  */
 @Extension
 public class SCM2Notifier extends SaveableListener {
 
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SCM2Notifier.class.getName());
+    /**
+     * Escape hatch to run {@link SCM2#afterSave(SCMTriggerItem)} inside the save.
+     */
+    private static final boolean SYNCHRONOUS = Boolean.getBoolean(SCM2Notifier.class.getName() + ".synchronous");
+    /**
+     * The maximum number of threads running {@link SCM2#afterSave(SCMTriggerItem)} callbacks.
+     */
+    private static final int THREADS = Math.max(1, Integer.getInteger(SCM2Notifier.class.getName() + ".threads", 2));
+    /**
+     * The maximum number of items waiting for their callbacks. As repeated saves of a waiting item are coalesced this
+     * only needs to exceed the number of items with {@link SCM2} instances; once full, callbacks run inside the save.
+     */
+    private static final int QUEUE_CAPACITY =
+            Math.max(1, Integer.getInteger(SCM2Notifier.class.getName() + ".queueCapacity", 10000));
+    /**
+     * The executor running the callbacks.
+     */
+    static final ThreadPoolExecutor executor;
+    /**
+     * The items that are waiting for their callbacks to start.
+     */
+    private static final ConcurrentMap<Item, Boolean> pending = new ConcurrentHashMap<Item, Boolean>();
+    /**
+     * The progress of the callbacks.
+     */
+    private static final Stats stats = new Stats();
+
+    static {
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY),
+                new NamingThreadFactory(new DaemonThreadFactory(), SCM2Notifier.class.getSimpleName()));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -51,21 +120,241 @@ public class SCM2Notifier extends SaveableListener {
             // must be an Item
             return;
         }
-        SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem((Item) o);
+        // the configuration may have changed
+        SCM2TransientActionFactory.invalidate((Item) o);
+        if (asTriggeredItem((Item) o) == null) {
+            return;
+        }
+        if (SYNCHRONOUS) {
+            // failures propagate to the save as they did before the callbacks were asynchronous
+            new AfterSave((Item) o, Jenkins.getAuthentication(), true).run();
+            return;
+        }
+        AfterSave task = new AfterSave((Item) o, Jenkins.getAuthentication(), false);
+        if (pending.putIfAbsent((Item) o, Boolean.TRUE) != null) {
+            // the pending callback will pick up this configuration
+            stats.coalesced.incrementAndGet();
+            return;
+        }
+        stats.queued.incrementAndGet();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // the queue is full, apply back pressure to the saving thread rather than dropping the callback
+            task.run();
+        }
+    }
+
+    /**
+     * Returns the progress of the {@link SCM2#afterSave(SCMTriggerItem)} callbacks.
+     *
+     * @return the progress of the callbacks.
+     * @since FIXME
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    public static Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the item as a {@link SCMTriggerItem} if it has post commit hooks enabled.
+     *
+     * @param o the item.
+     * @return the {@link SCMTriggerItem} or {@code null} if the callbacks do not apply.
+     */
+    private static SCMTriggerItem asTriggeredItem(Item o) {
+        SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(o);
         if (item == null) {
             // more specifically must be an SCMTriggerItem
-            return;
+            return null;
         }
         SCMTrigger trigger = item.getSCMTrigger();
         if (trigger == null || trigger.isIgnorePostCommitHooks()) {
             // must have the trigger enabled and not opted out of post commit hooks
-            return;
+            return null;
         }
-        for (SCM scm : item.getSCMs()) {
-            if (scm instanceof SCM2) {
-                // we have a winner
-                ((SCM2) scm).afterSave(item);
+        return item;
+    }
+
+    /**
+     * Runs the {@link SCM2#afterSave(SCMTriggerItem)} callbacks of an item.
+     */
+    private static class AfterSave implements Runnable {
+        /**
+         * The item.
+         */
+        private final Item item;
+        /**
+         * The authentication that saved the item.
+         */
+        private final Authentication authentication;
+        /**
+         * {@code true} if running inside the save, in which case failures are propagated.
+         */
+        private final boolean synchronous;
+
+        /**
+         * Constructor.
+         *
+         * @param item           the item.
+         * @param authentication the authentication that saved the item.
+         * @param synchronous    {@code true} if running inside the save, in which case failures are propagated.
+         */
+        private AfterSave(Item item, Authentication authentication, boolean synchronous) {
+            this.item = item;
+            this.authentication = authentication;
+            this.synchronous = synchronous;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            // any save from now on needs a new callback
+            pending.remove(item);
+            stats.running.incrementAndGet();
+            long start = System.nanoTime();
+            boolean failed = false;
+            SecurityContext context = ACL.impersonate(authentication);
+            try {
+                // re-check as the item may have been reconfigured since it was queued
+                SCMTriggerItem triggerItem = asTriggeredItem(item);
+                if (triggerItem == null) {
+                    return;
+                }
+                for (SCM scm : triggerItem.getSCMs()) {
+                    if (scm instanceof SCM2) {
+                        // we have a winner
+                        try {
+                            ((SCM2) scm).afterSave(triggerItem);
+                        } catch (RuntimeException e) {
+                            failed = true;
+                            if (synchronous) {
+                                throw e;
+                            }
+                            LOGGER.log(Level.WARNING, "Could not process afterSave of " + scm + " for "
+                                    + item.getFullName(), e);
+                        }
+                    }
+                }
+            } finally {
+                SecurityContextHolder.setContext(context);
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                stats.running.decrementAndGet();
+                stats.completed.incrementAndGet();
+                if (failed) {
+                    stats.failed.incrementAndGet();
+                }
+                stats.lastDurationMillis = millis;
+                LOGGER.log(Level.FINE, "Processed afterSave for {0} in {1}ms",
+                        new Object[]{item.getFullName(), millis});
             }
         }
     }
+
+    /**
+     * The progress of the {@link SCM2#afterSave(SCMTriggerItem)} callbacks.
+     *
+     * @since FIXME
+     */
+    @ExportedBean
+    @Restricted(NoExternalUse.class)
+    public static final class Stats {
+        /**
+         * The number of callbacks queued, not including coalesced saves.
+         */
+        private final AtomicLong queued = new AtomicLong();
+        /**
+         * The number of saves coalesced into an already queued callback.
+         */
+        private final AtomicLong coalesced = new AtomicLong();
+        /**
+         * The number of callbacks currently running.
+         */
+        private final AtomicLong running = new AtomicLong();
+        /**
+         * The number of callbacks completed.
+         */
+        private final AtomicLong completed = new AtomicLong();
+        /**
+         * The number of callbacks where at least one {@link SCM2} failed.
+         */
+        private final AtomicLong failed = new AtomicLong();
+        /**
+         * How long the most recent callback took.
+         */
+        private volatile long lastDurationMillis;
+
+        /**
+         * Returns the number of items waiting for their callbacks to start.
+         *
+         * @return the number of items waiting for their callbacks to start.
+         */
+        @Exported
+        public int getPending() {
+            return pending.size();
+        }
+
+        /**
+         * Returns the number of callbacks currently running.
+         *
+         * @return the number of callbacks currently running.
+         */
+        @Exported
+        public long getRunning() {
+            return running.get();
+        }
+
+        /**
+         * Returns the total number of callbacks queued, not including coalesced saves.
+         *
+         * @return the total number of callbacks queued.
+         */
+        @Exported
+        public long getQueued() {
+            return queued.get();
+        }
+
+        /**
+         * Returns the total number of saves coalesced into an already queued callback.
+         *
+         * @return the total number of saves coalesced into an already queued callback.
+         */
+        @Exported
+        public long getCoalesced() {
+            return coalesced.get();
+        }
+
+        /**
+         * Returns the total number of callbacks completed.
+         *
+         * @return the total number of callbacks completed.
+         */
+        @Exported
+        public long getCompleted() {
+            return completed.get();
+        }
+
+        /**
+         * Returns the total number of callbacks where at least one {@link SCM2} failed.
+         *
+         * @return the total number of callbacks where at least one {@link SCM2} failed.
+         */
+        @Exported
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Returns how long the most recent callback took.
+         *
+         * @return how long the most recent callback took in milliseconds.
+         */
+        @Exported
+        public long getLastDurationMillis() {
+            return lastDurationMillis;
+        }
+    }
 }
@@ -25,26 +25,90 @@
 
 package jenkins.scm.impl;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.Action;
 import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
 import hudson.scm.SCM;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nonnull;
 import jenkins.model.TransientActionFactory;
 import jenkins.scm.api.SCM2;
 import jenkins.triggers.SCMTriggerItem;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
  * Extension to inject the actions of a {@link SCM2} into its owning item.
+ * <p>
+ * The actions are cached per item until the item is saved (see {@link SCM2Notifier}), its {@link SCM} instances
+ * change or {@link #invalidate(Item)} is called, as this factory is consulted every time the actions of an item are
+ * listed.
  * @since 2.0
  */
 @Extension
 public class SCM2TransientActionFactory extends TransientActionFactory<Item> {
 
+    /**
+     * The cached actions of the items with at least one {@link SCM2} keyed by {@link Item#getFullName()}. The entries
+     * hold strong references to the {@link SCM} instances and actions of the item, which may well refer back to the
+     * item, so an entry stays in memory until it is invalidated: when the item is saved, deleted, moved or reloaded
+     * (along with the entries of any items nested within it) or {@link #invalidate(Item)} is called.
+     */
+    private static final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+    /**
+     * Discards the cached actions of an item, for use by {@link SCM2} implementations whose
+     * {@link SCM2#getItemActions(SCMTriggerItem)} change other than when the item is saved.
+     *
+     * @param item the item.
+     * @since FIXME
+     */
+    public static void invalidate(@NonNull Item item) {
+        cache.remove(item.getFullName());
+    }
+
+    /**
+     * Discards the cached actions of an item and of all the items nested within it.
+     *
+     * @param fullName the {@link Item#getFullName()} of the item.
+     */
+    private static void invalidateAll(@NonNull String fullName) {
+        cache.remove(fullName);
+        String prefix = fullName + "/";
+        for (Iterator<String> iterator = cache.keySet().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of items with cached actions.
+     *
+     * @return the number of items with cached actions.
+     */
+    static int cacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Checks if there are cached actions for an item.
+     *
+     * @param fullName the {@link Item#getFullName()} of the item.
+     * @return {@code true} if there are cached actions for the item.
+     */
+    static boolean isCached(@NonNull String fullName) {
+        return cache.containsKey(fullName);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -61,14 +125,104 @@ public class SCM2TransientActionFactory extends TransientActionFactory<Item> {
     public Collection<? extends Action> createFor(@Nonnull Item target) {
         if (target instanceof SCMTriggerItem) {
             final SCMTriggerItem item = (SCMTriggerItem) target;
+            List<SCM> scms = new ArrayList<SCM>(item.getSCMs());
+            String fullName = target.getFullName();
+            CacheEntry entry = cache.get(fullName);
+            if (entry != null && entry.isFor(scms)) {
+                return entry.actions;
+            }
             List<Action> result = new ArrayList<Action>();
-            for (SCM scm : item.getSCMs()) {
+            boolean scm2 = false;
+            for (SCM scm : scms) {
                 if (scm instanceof SCM2) {
+                    scm2 = true;
                     result.addAll(((SCM2) scm).getItemActions(item));
                 }
             }
-            return result;
+            if (!scm2) {
+                // nothing worth caching
+                return result;
+            }
+            List<Action> actions = Collections.unmodifiableList(result);
+            cache.put(fullName, new CacheEntry(scms, actions));
+            return actions;
         }
         return Collections.emptyList();
     }
+
+    /**
+     * The actions computed for an item.
+     */
+    private static final class CacheEntry {
+        /**
+         * The {@link SCM} instances the actions were computed from.
+         */
+        private final List<SCM> scms;
+        /**
+         * The actions.
+         */
+        private final List<Action> actions;
+
+        /**
+         * Constructor.
+         *
+         * @param scms    the {@link SCM} instances the actions were computed from.
+         * @param actions the actions.
+         */
+        private CacheEntry(List<SCM> scms, List<Action> actions) {
+            this.scms = scms;
+            this.actions = actions;
+        }
+
+        /**
+         * Checks if this entry was computed from the supplied {@link SCM} instances. As the {@link SCM} instances
+         * belong to a single item this also detects an entry left by a different item with the same name.
+         *
+         * @param scms the current {@link SCM} instances of the item.
+         * @return {@code true} if the same instances in the same order.
+         */
+        private boolean isFor(List<SCM> scms) {
+            if (this.scms.size() != scms.size()) {
+                return false;
+            }
+            for (int i = 0; i < scms.size(); i++) {
+                if (this.scms.get(i) != scms.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drops the cached actions of items that are deleted, moved or reloaded.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class ItemListenerImpl extends ItemListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(Item item) {
+            // the children of a deleted folder are not notified individually
+            invalidateAll(item.getFullName());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            invalidateAll(oldFullName);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLoaded() {
+            cache.clear();
+        }
+    }
 }
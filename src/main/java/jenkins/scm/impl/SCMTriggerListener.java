@@ -25,23 +25,61 @@
 
 package jenkins.scm.impl;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
+import hudson.XmlFile;
 import hudson.model.Action;
 import hudson.model.Cause;
 import hudson.model.CauseAction;
 import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
 import hudson.scm.SCM;
+import hudson.security.ACL;
 import hudson.triggers.SCMTrigger;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
 import jenkins.scm.api.SCMEventListener;
 import jenkins.scm.api.SCMHeadEvent;
 import jenkins.triggers.SCMTriggerItem;
+import net.jcip.annotations.GuardedBy;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
  * A {@link SCMEventListener} that will trigger the post commit hooks enabled by {@link SCMTrigger} for any
  * {@link SCMHeadEvent} which return a positive match against a {@link SCM} through {@link SCMHeadEvent#isMatch(SCM)}.
+ * <p>
+ * Rather than walking every item for each event, the items that have post commit hooks enabled are tracked in an
+ * index, together with their trigger and {@link SCMTriggerItem#getSCMs()}, that is updated as items are saved or
+ * complete a build and rebuilt on the next event after items are created, copied, moved, deleted or reloaded. Set
+ * the {@code jenkins.scm.impl.SCMTriggerListener.disableIndex} system property to {@code true} to walk every item
+ * instead.
+ * <p>
+ * The matched items are handed to their {@link SCMTrigger} from a small pool of threads with a bounded queue rather
+ * than from the event thread, and an item that is still waiting to be handed over is not triggered again by further
+ * events.
  *
  * @since 2.0
  */
@@ -51,6 +89,67 @@ public class SCMTriggerListener extends SCMEventListener {
      * Our logger
      */
     private static final Logger LOGGER = Logger.getLogger(SCMTriggerListener.class.getName());
+    /**
+     * Escape hatch to walk every item for each event.
+     */
+    private static final boolean DISABLE_INDEX =
+            Boolean.getBoolean(SCMTriggerListener.class.getName() + ".disableIndex");
+    /**
+     * Lock guarding {@link #index}, {@link #generation} and {@link #dirty}.
+     */
+    private static final Object indexLock = new Object();
+    /**
+     * Serializes rebuilds so that concurrent events do not each walk every item.
+     */
+    private static final Object buildLock = new Object();
+    /**
+     * The items that had post commit hooks enabled when last saved or {@code null} if the index needs to be rebuilt.
+     * A concurrent map so that events can iterate it without holding the lock.
+     */
+    @GuardedBy("indexLock")
+    @CheckForNull
+    private static ConcurrentMap<Item, Tracked> index;
+    /**
+     * Incremented each time the index is invalidated so that a rebuild started before the invalidation is discarded.
+     */
+    @GuardedBy("indexLock")
+    private static long generation;
+    /**
+     * The items saved since the index was invalidated, re-indexed when a rebuilt index is published as the rebuild
+     * may have read them before they were saved.
+     */
+    @GuardedBy("indexLock")
+    private static final Set<Item> dirty = new LinkedHashSet<Item>();
+    /**
+     * The maximum number of threads used to hand matched items to {@link SCMTrigger#run(Action[])}, controlled by the
+     * {@code jenkins.scm.impl.SCMTriggerListener.pollingThreads} system property.
+     */
+    private static final int POLLING_THREADS =
+            Math.max(1, Integer.getInteger(SCMTriggerListener.class.getName() + ".pollingThreads", 4));
+    /**
+     * The maximum number of matched items waiting for a polling thread, controlled by the
+     * {@code jenkins.scm.impl.SCMTriggerListener.pollingQueueCapacity} system property. As further events for an
+     * item that is already waiting are coalesced this only needs to exceed the number of items with post commit
+     * hooks enabled; once full, items are handed to their trigger on the event thread.
+     */
+    private static final int POLLING_QUEUE_CAPACITY =
+            Math.max(1, Integer.getInteger(SCMTriggerListener.class.getName() + ".pollingQueueCapacity", 10000));
+    /**
+     * The executor that triggers polling so that an event matching many items does not occupy the event thread.
+     */
+    static final ThreadPoolExecutor pollingExecutor;
+    /**
+     * The items that are waiting on {@link #pollingExecutor} to be triggered, further events for these items are
+     * coalesced into the pending request.
+     */
+    private static final ConcurrentMap<Item, Boolean> pending = new ConcurrentHashMap<Item, Boolean>();
+
+    static {
+        pollingExecutor = new ThreadPoolExecutor(POLLING_THREADS, POLLING_THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(POLLING_QUEUE_CAPACITY),
+                new NamingThreadFactory(new DaemonThreadFactory(), SCMTriggerListener.class.getSimpleName()));
+        pollingExecutor.allowCoreThreadTimeOut(true);
+    }
 
     /**
      * {@inheritDoc}
@@ -61,23 +160,11 @@ public class SCMTriggerListener extends SCMEventListener {
             case CREATED:
             case UPDATED:
                 // only trigger polling for create/update
-                for (Item project : Jenkins.getActiveInstance().getAllItems()) {
-                    SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(project);
-                    if (scmTriggerItem == null) {
-                        // if it is not a SCMTriggerItem => ignore it
-                        continue;
-                    }
-                    SCMTrigger trigger = scmTriggerItem.getSCMTrigger();
-                    if (trigger == null || trigger.isIgnorePostCommitHooks()) {
-                        // if it is not enabled for triggering => ignore it
-                        continue;
-                    }
-                    for (SCM scm : scmTriggerItem.getSCMs()) {
+                for (Tracked tracked : candidates().values()) {
+                    for (SCM scm : tracked.scms) {
                         if (event.isMatch(scm)) {
                             // only interested in SCMs that match the event
-                            LOGGER.log(Level.INFO, "Triggering polling of {0}", project.getFullName());
-                            Cause[] causes = event.asCauses();
-                            trigger.run(causes.length == 0 ? null : new Action[]{new CauseAction(causes)});
+                            poll(tracked.item, tracked.trigger, event);
                             break;
                         }
                     }
@@ -87,4 +174,324 @@ public class SCMTriggerListener extends SCMEventListener {
                 break;
         }
     }
+
+    /**
+     * Triggers polling of a matched item, unless the item is already waiting to be triggered.
+     *
+     * @param item    the item.
+     * @param trigger the item's trigger.
+     * @param event   the event.
+     */
+    private static void poll(Item item, SCMTrigger trigger, SCMHeadEvent<?> event) {
+        if (pending.putIfAbsent(item, Boolean.TRUE) != null) {
+            LOGGER.log(Level.FINE, "Polling of {0} already pending, coalescing {1}",
+                    new Object[]{item.getFullName(), event});
+            return;
+        }
+        PollingRequest request = new PollingRequest(item, trigger, event);
+        try {
+            pollingExecutor.execute(request);
+        } catch (RejectedExecutionException e) {
+            // the queue is full, apply back pressure to the event thread rather than dropping the request
+            request.run();
+        }
+    }
+
+    /**
+     * Returns the items that may have post commit hooks enabled, building the index if necessary.
+     *
+     * @return the items to check keyed by item.
+     */
+    @NonNull
+    private static Map<Item, Tracked> candidates() {
+        if (DISABLE_INDEX) {
+            return walk();
+        }
+        while (true) {
+            synchronized (indexLock) {
+                if (index != null) {
+                    return index;
+                }
+            }
+            rebuild();
+        }
+    }
+
+    /**
+     * Checks if an item is tracked as having post commit hooks enabled, building the index if necessary.
+     *
+     * @param item the item.
+     * @return {@code true} if the item will be checked against events.
+     */
+    static boolean isTracked(Item item) {
+        return candidates().containsKey(item);
+    }
+
+    /**
+     * Walks every item collecting those that have post commit hooks enabled.
+     *
+     * @return the items that have post commit hooks enabled.
+     */
+    @NonNull
+    private static ConcurrentMap<Item, Tracked> walk() {
+        ConcurrentMap<Item, Tracked> items = new ConcurrentHashMap<Item, Tracked>();
+        for (Item item : Jenkins.getActiveInstance().getAllItems()) {
+            Tracked tracked = track(item);
+            if (tracked != null) {
+                items.put(item, tracked);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Builds the index if it is not valid. The items are walked without holding {@link #indexLock} so that saves and
+     * invalidations are not blocked by the walk; the result is discarded if the index was invalidated meanwhile.
+     */
+    private static void rebuild() {
+        synchronized (buildLock) {
+            long started;
+            synchronized (indexLock) {
+                if (index != null) {
+                    return;
+                }
+                started = generation;
+            }
+            ConcurrentMap<Item, Tracked> built = walk();
+            synchronized (indexLock) {
+                if (index == null && generation == started) {
+                    for (Item item : dirty) {
+                        update(built, item);
+                    }
+                    dirty.clear();
+                    index = built;
+                }
+            }
+        }
+    }
+
+    /**
+     * Captures the trigger and SCMs of an item that has post commit hooks enabled.
+     *
+     * @param item the item.
+     * @return the entry to index or {@code null} if the item is not a {@link SCMTriggerItem} with a
+     * {@link SCMTrigger} that has not disabled post commit hooks.
+     */
+    @CheckForNull
+    private static Tracked track(Item item) {
+        SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(item);
+        if (scmTriggerItem == null) {
+            return null;
+        }
+        SCMTrigger trigger = scmTriggerItem.getSCMTrigger();
+        if (trigger == null || trigger.isIgnorePostCommitHooks()) {
+            return null;
+        }
+        return new Tracked(item, trigger, new ArrayList<SCM>(scmTriggerItem.getSCMs()));
+    }
+
+    /**
+     * Discards the index so that it is rebuilt on the next event.
+     */
+    private static void invalidate() {
+        synchronized (indexLock) {
+            index = null;
+            generation++;
+            dirty.clear();
+        }
+    }
+
+    /**
+     * Re-indexes an item after it has been saved or completed a build, i.e. when its trigger or SCMs may have
+     * changed.
+     *
+     * @param item the item.
+     */
+    private static void update(Item item) {
+        synchronized (indexLock) {
+            if (index == null) {
+                // a rebuild in progress may have read the item before it was saved
+                dirty.add(item);
+                return;
+            }
+            update(index, item);
+        }
+    }
+
+    /**
+     * Re-indexes an item in the supplied index.
+     *
+     * @param index the index.
+     * @param item  the item.
+     */
+    private static void update(ConcurrentMap<Item, Tracked> index, Item item) {
+        Tracked tracked = track(item);
+        if (tracked != null) {
+            index.put(item, tracked);
+        } else {
+            index.remove(item);
+        }
+    }
+
+    /**
+     * An item with post commit hooks enabled, as of when it was indexed.
+     */
+    private static final class Tracked {
+        /**
+         * The item.
+         */
+        private final Item item;
+        /**
+         * The item's trigger.
+         */
+        private final SCMTrigger trigger;
+        /**
+         * The item's SCMs.
+         */
+        private final List<SCM> scms;
+
+        /**
+         * Constructor.
+         *
+         * @param item    the item.
+         * @param trigger the item's trigger.
+         * @param scms    the item's SCMs.
+         */
+        private Tracked(Item item, SCMTrigger trigger, List<SCM> scms) {
+            this.item = item;
+            this.trigger = trigger;
+            this.scms = scms;
+        }
+    }
+
+    /**
+     * Hands a matched item to its {@link SCMTrigger}.
+     */
+    private static class PollingRequest implements Runnable {
+        /**
+         * The item.
+         */
+        private final Item item;
+        /**
+         * The item's trigger.
+         */
+        private final SCMTrigger trigger;
+        /**
+         * The event that matched the item.
+         */
+        private final SCMHeadEvent<?> event;
+
+        /**
+         * Constructor.
+         *
+         * @param item    the item.
+         * @param trigger the item's trigger.
+         * @param event   the event that matched the item.
+         */
+        private PollingRequest(Item item, SCMTrigger trigger, SCMHeadEvent<?> event) {
+            this.item = item;
+            this.trigger = trigger;
+            this.event = event;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            // once polling has been requested a later event must be able to request it again
+            pending.remove(item);
+            SecurityContext context = ACL.impersonate(ACL.SYSTEM);
+            try {
+                LOGGER.log(Level.INFO, "Triggering polling of {0}", item.getFullName());
+                Cause[] causes = event.asCauses();
+                trigger.run(causes.length == 0 ? null : new Action[]{new CauseAction(causes)});
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not trigger polling of " + item.getFullName(), e);
+            } finally {
+                SecurityContextHolder.setContext(context);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the index when the item tree changes shape.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class ItemListenerImpl extends ItemListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCreated(Item item) {
+            invalidate();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCopied(Item src, Item item) {
+            invalidate();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLoaded() {
+            invalidate();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(Item item) {
+            invalidate();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Updates the index as items are saved, i.e. when the {@link SCMTrigger} may have been added, removed or
+     * reconfigured.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class SaveableListenerImpl extends SaveableListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Item) {
+                update((Item) o);
+            }
+        }
+    }
+
+    /**
+     * Updates the index as builds complete, i.e. when the {@link SCMTriggerItem#getSCMs()} of items that only know
+     * their SCMs once they have been checked out may have changed.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+            update(run.getParent());
+        }
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * A lock-free latency histogram with logarithmic buckets (two buckets per power of two, starting at one microsecond)
+ * that is cheap enough to record into on every event dispatch. Percentiles are reported as the upper bound of the
+ * bucket they fall in, so they are accurate to within a factor of {@code sqrt(2)}.
+ *
+ * @since FIXME
+ */
+@ExportedBean
+@Restricted(NoExternalUse.class)
+public class LatencyHistogram {
+
+    /**
+     * The number of buckets, the last bucket collects everything above {@code 1000 * 2^31} nanoseconds (roughly
+     * 36 minutes).
+     */
+    private static final int BUCKET_COUNT = 64;
+    /**
+     * The (exclusive) upper bound of each bucket in nanoseconds.
+     */
+    private static final long[] BOUNDS_NANOS = new long[BUCKET_COUNT];
+
+    static {
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            BOUNDS_NANOS[i] = Math.round(1000.0 * Math.pow(2.0, i / 2.0));
+        }
+        BOUNDS_NANOS[BUCKET_COUNT - 1] = Long.MAX_VALUE;
+    }
+
+    /**
+     * The count of samples in each bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    /**
+     * The total number of samples.
+     */
+    private final AtomicLong count = new AtomicLong();
+    /**
+     * The sum of all samples in nanoseconds.
+     */
+    private final AtomicLong sumNanos = new AtomicLong();
+    /**
+     * The largest sample in nanoseconds.
+     */
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a sample.
+     *
+     * @param nanos the sample in nanoseconds, negative values (e.g. from clock skew) are recorded as zero.
+     */
+    public void record(long nanos) {
+        if (nanos < 0L) {
+            nanos = 0L;
+        }
+        int index = Arrays.binarySearch(BOUNDS_NANOS, nanos);
+        // exact match on a bound belongs in the next bucket, otherwise the insertion point is the bucket
+        index = index >= 0 ? Math.min(index + 1, BUCKET_COUNT - 1) : -index - 1;
+        buckets.incrementAndGet(index);
+        count.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+        long max;
+        while ((max = maxNanos.get()) < nanos) {
+            if (maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of samples.
+     *
+     * @return the number of samples.
+     */
+    @Exported
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the mean of the samples in milliseconds.
+     *
+     * @return the mean of the samples in milliseconds.
+     */
+    @Exported
+    public double getMeanMillis() {
+        long c = count.get();
+        return c == 0L ? 0.0 : toMillis(sumNanos.get() / c);
+    }
+
+    /**
+     * Returns the largest sample in milliseconds.
+     *
+     * @return the largest sample in milliseconds.
+     */
+    @Exported
+    public double getMaxMillis() {
+        return toMillis(maxNanos.get());
+    }
+
+    /**
+     * Returns an estimate of the requested percentile in milliseconds.
+     *
+     * @param percentile the percentile, e.g. {@code 0.99}
+     * @return the estimate or {@code 0.0} if there are no samples.
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0L) {
+            return 0.0;
+        }
+        long target = Math.max(1L, (long) Math.ceil(percentile * total));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                // never report more than the actual maximum
+                return Math.min(toMillis(BOUNDS_NANOS[i]), getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Returns the median in milliseconds.
+     *
+     * @return the median in milliseconds.
+     */
+    @Exported
+    public double getP50Millis() {
+        return getPercentileMillis(0.50);
+    }
+
+    /**
+     * Returns the 95th percentile in milliseconds.
+     *
+     * @return the 95th percentile in milliseconds.
+     */
+    @Exported
+    public double getP95Millis() {
+        return getPercentileMillis(0.95);
+    }
+
+    /**
+     * Returns the 99th percentile in milliseconds.
+     *
+     * @return the 99th percentile in milliseconds.
+     */
+    @Exported
+    public double getP99Millis() {
+        return getPercentileMillis(0.99);
+    }
+
+    /**
+     * Converts nanoseconds to fractional milliseconds.
+     *
+     * @param nanos the nanoseconds.
+     * @return the milliseconds.
+     */
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,986 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.api.SCMHeadEvent;
+import jenkins.scm.api.SCMNavigatorEvent;
+import jenkins.scm.api.SCMSourceEvent;
+import net.jcip.annotations.GuardedBy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A dedicated {@link ScheduledExecutorService} for dispatching {@link SCMEvent} instances so that events do not have to
+ * compete with all the other periodic work that runs on {@link jenkins.util.Timer}.
+ * <p>
+ * Immediate tasks are run on a bounded {@link ThreadPoolExecutor}. Delayed tasks are held by a single scheduler thread
+ * and handed off to the bounded pool once their delay has expired, so that slow listeners can never hold up the
+ * scheduling of other events. When the pool and its queue are saturated what happens depends on the
+ * {@link OverflowPolicy}, by default the task is run on the submitting thread, which pushes back on the event source
+ * rather than losing the event. Delayed tasks are the exception: the scheduler thread never runs a task itself, a
+ * delayed task that finds its lane saturated is retried shortly afterwards instead.
+ * <p>
+ * The pool can be tuned with the following system properties:
+ * <ul>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.corePoolSize} (default {@value #DEFAULT_CORE_POOL_SIZE})
+ * </li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.maximumPoolSize}
+ * (default {@value #DEFAULT_MAXIMUM_POOL_SIZE}) - note that, as with any {@link ThreadPoolExecutor}, threads beyond
+ * the core pool size are only started once the queue is full</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.queueCapacity}
+ * (default {@value #DEFAULT_QUEUE_CAPACITY})</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.keepAliveSeconds}
+ * (default {@value #DEFAULT_KEEP_ALIVE_SECONDS})</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.overflowPolicy} the {@link OverflowPolicy} applied to
+ * events submitted through {@link #tryExecute(Shedable)} when the pool is saturated (default
+ * {@link OverflowPolicy#CALLER_RUNS})</li>
+ * </ul>
+ * <h2>Lanes</h2>
+ * Tasks submitted with {@link #execute(Runnable, SCMEvent)} or {@link #schedule(Runnable, SCMEvent, long, TimeUnit)}
+ * are routed to a <em>lane</em> based on the kind of event ({@code navigator}, {@code source}, {@code head} or
+ * {@code other}) and its {@link SCMEvent.Type}. Each lane other than the {@value #DEFAULT_LANE} lane (which is the
+ * pool described above) has its own threads and queue, so cheap events in one lane never wait behind a flood of
+ * expensive events in another. By default {@link SCMNavigatorEvent} and {@link SCMSourceEvent} instances use the
+ * {@value #PRIORITY_LANE} lane and everything else uses the {@value #DEFAULT_LANE} lane. Lanes are configured with the
+ * following system properties:
+ * <ul>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.lane.<kind>.<TYPE>} the name of the lane to use for
+ * events of that kind and type, e.g. {@code ...lane.head.REMOVED=priority} or {@code ...lane.source.UPDATED=default}.
+ * Any name can be used, a lane is created on first use.</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.<lane>.maximumPoolSize} the maximum number of events from
+ * the lane that are processed concurrently (default {@value #DEFAULT_LANE_POOL_SIZE})</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.<lane>.queueCapacity} (defaults to the queue capacity of
+ * the {@value #DEFAULT_LANE} lane)</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.<lane>.threadPriority} the {@link Thread#getPriority()}
+ * of the threads of the lane (default {@link Thread#NORM_PRIORITY} plus one for the {@value #PRIORITY_LANE} lane and
+ * {@link Thread#NORM_PRIORITY} for any other lane)</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventExecutorService.<lane>.overflowPolicy} (defaults to the policy of the
+ * {@value #DEFAULT_LANE} lane)</li>
+ * </ul>
+ *
+ * @since FIXME
+ */
+@Restricted(NoExternalUse.class)
+public class SCMEventExecutorService extends AbstractExecutorService implements ScheduledExecutorService {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SCMEventExecutorService.class.getName());
+    /**
+     * The default number of core threads.
+     */
+    public static final int DEFAULT_CORE_POOL_SIZE = 8;
+    /**
+     * The default maximum number of threads.
+     */
+    public static final int DEFAULT_MAXIMUM_POOL_SIZE = 32;
+    /**
+     * The default capacity of the queue of pending tasks.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    /**
+     * The default time that idle threads are retained.
+     */
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+    /**
+     * The name of the lane that is backed by the main pool.
+     */
+    public static final String DEFAULT_LANE = "default";
+    /**
+     * The name of the lane that navigator and source events use by default.
+     */
+    public static final String PRIORITY_LANE = "priority";
+    /**
+     * The default maximum number of threads for a lane other than the {@link #DEFAULT_LANE}.
+     */
+    public static final int DEFAULT_LANE_POOL_SIZE = 4;
+    /**
+     * How long to wait before retrying to hand off a delayed task to a saturated lane.
+     */
+    private static final long HAND_OFF_RETRY_MILLIS = 50L;
+    /**
+     * The singleton instance.
+     */
+    @GuardedBy("SCMEventExecutorService.class")
+    private static SCMEventExecutorService instance;
+    /**
+     * The bounded pool that actually runs the tasks.
+     */
+    @NonNull
+    private final ThreadPoolExecutor pool;
+    /**
+     * The pools of the lanes other than the {@link #DEFAULT_LANE}, keyed by lane name. Created on first use.
+     */
+    private final ConcurrentMap<String, ThreadPoolExecutor> lanes = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+    /**
+     * The lane name for each kind and type of event, keyed by {@link #laneKey(SCMEvent)}.
+     */
+    private final ConcurrentMap<String, String> routes = new ConcurrentHashMap<String, String>();
+    /**
+     * The time that idle threads are retained.
+     */
+    private final long keepAlive;
+    /**
+     * The units of {@link #keepAlive}.
+     */
+    @NonNull
+    private final TimeUnit keepAliveUnit;
+    /**
+     * The scheduler that holds delayed tasks until they are due.
+     */
+    @NonNull
+    private final ScheduledThreadPoolExecutor scheduler;
+    /**
+     * The capacity of the queue of {@link #pool}.
+     */
+    private final int queueCapacity;
+    /**
+     * The number of tasks that could not be queued and were run on the submitting thread.
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+    /**
+     * The number of events that were shed by an {@link OverflowPolicy}.
+     */
+    private final AtomicLong shedCount = new AtomicLong();
+    /**
+     * The {@link OverflowPolicy} of the {@link #DEFAULT_LANE} and the default for other lanes.
+     */
+    @NonNull
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Constructor.
+     *
+     * @param corePoolSize    the number of core threads.
+     * @param maximumPoolSize the maximum number of threads.
+     * @param queueCapacity   the capacity of the queue of pending tasks.
+     * @param keepAlive       the time that idle threads are retained.
+     * @param keepAliveUnit   the units of {@code keepAlive}.
+     */
+    public SCMEventExecutorService(int corePoolSize, int maximumPoolSize, int queueCapacity, long keepAlive,
+                                   @NonNull TimeUnit keepAliveUnit) {
+        this(corePoolSize, maximumPoolSize, queueCapacity, keepAlive, keepAliveUnit, OverflowPolicy.parse(
+                System.getProperty(SCMEventExecutorService.class.getName() + ".overflowPolicy"),
+                OverflowPolicy.CALLER_RUNS));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param corePoolSize    the number of core threads.
+     * @param maximumPoolSize the maximum number of threads.
+     * @param queueCapacity   the capacity of the queue of pending tasks.
+     * @param keepAlive       the time that idle threads are retained.
+     * @param keepAliveUnit   the units of {@code keepAlive}.
+     * @param overflowPolicy  what to do with events submitted through {@link #tryExecute(Shedable)} when saturated.
+     */
+    public SCMEventExecutorService(int corePoolSize, int maximumPoolSize, int queueCapacity, long keepAlive,
+                                   @NonNull TimeUnit keepAliveUnit, @NonNull OverflowPolicy overflowPolicy) {
+        corePoolSize = Math.max(1, corePoolSize);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.pool = new ThreadPoolExecutor(corePoolSize, Math.max(corePoolSize, maximumPoolSize),
+                keepAlive, keepAliveUnit, new LinkedBlockingQueue<Runnable>(this.queueCapacity),
+                new NamingThreadFactory(new DaemonThreadFactory(), SCMEvent.class.getSimpleName()),
+                new Overflow(overflowPolicy)
+        );
+        this.pool.allowCoreThreadTimeOut(true);
+        this.keepAlive = keepAlive;
+        this.keepAliveUnit = keepAliveUnit;
+        this.scheduler = new ScheduledThreadPoolExecutor(1,
+                new NamingThreadFactory(new DaemonThreadFactory(), SCMEvent.class.getSimpleName() + ".scheduler")
+        );
+    }
+
+    /**
+     * Returns the singleton instance configured from the system properties, creating it if necessary.
+     *
+     * @return the singleton instance.
+     */
+    @NonNull
+    public static synchronized SCMEventExecutorService get() {
+        if (instance == null || instance.isShutdown()) {
+            String prefix = SCMEventExecutorService.class.getName();
+            instance = new SCMEventExecutorService(
+                    Integer.getInteger(prefix + ".corePoolSize", DEFAULT_CORE_POOL_SIZE),
+                    Integer.getInteger(prefix + ".maximumPoolSize", DEFAULT_MAXIMUM_POOL_SIZE),
+                    Integer.getInteger(prefix + ".queueCapacity", DEFAULT_QUEUE_CAPACITY),
+                    Integer.getInteger(prefix + ".keepAliveSeconds", DEFAULT_KEEP_ALIVE_SECONDS),
+                    TimeUnit.SECONDS
+            );
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the kind of an event as used in the lane configuration.
+     *
+     * @param event the event.
+     * @return the routing key of the event, e.g. {@code head.UPDATED}.
+     */
+    @NonNull
+    static String laneKey(@NonNull SCMEvent<?> event) {
+        String kind;
+        if (event instanceof SCMHeadEvent) {
+            kind = "head";
+        } else if (event instanceof SCMSourceEvent) {
+            kind = "source";
+        } else if (event instanceof SCMNavigatorEvent) {
+            kind = "navigator";
+        } else {
+            kind = "other";
+        }
+        return kind + "." + event.getType().name();
+    }
+
+    /**
+     * Returns the name of the lane that tasks for the supplied event should be run in.
+     *
+     * @param event the event.
+     * @return the lane name.
+     */
+    @NonNull
+    public String laneOf(@NonNull SCMEvent<?> event) {
+        String key = laneKey(event);
+        String lane = routes.get(key);
+        if (lane == null) {
+            String defaultLane = event instanceof SCMSourceEvent || event instanceof SCMNavigatorEvent
+                    ? PRIORITY_LANE
+                    : DEFAULT_LANE;
+            lane = System.getProperty(SCMEventExecutorService.class.getName() + ".lane." + key, defaultLane).trim();
+            routes.put(key, lane);
+        }
+        return lane;
+    }
+
+    /**
+     * Returns the pool for the named lane, creating it if necessary.
+     *
+     * @param name the lane name.
+     * @return the pool.
+     */
+    @NonNull
+    private ThreadPoolExecutor lane(@NonNull String name) {
+        if (DEFAULT_LANE.equals(name)) {
+            return pool;
+        }
+        ThreadPoolExecutor lane = lanes.get(name);
+        if (lane == null) {
+            synchronized (lanes) {
+                lane = lanes.get(name);
+                if (lane == null) {
+                    if (pool.isShutdown()) {
+                        // do not start new threads after shutdown, the main pool will reject the task
+                        return pool;
+                    }
+                    String prefix = SCMEventExecutorService.class.getName() + "." + name;
+                    int size = Math.max(1, Integer.getInteger(prefix + ".maximumPoolSize", DEFAULT_LANE_POOL_SIZE));
+                    final int priority = Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY,
+                            Integer.getInteger(prefix + ".threadPriority",
+                                    PRIORITY_LANE.equals(name) ? Thread.NORM_PRIORITY + 1 : Thread.NORM_PRIORITY)));
+                    final ThreadFactory factory = new NamingThreadFactory(new DaemonThreadFactory(),
+                            SCMEvent.class.getSimpleName() + "." + name);
+                    lane = new ThreadPoolExecutor(size, size, keepAlive, keepAliveUnit,
+                            new LinkedBlockingQueue<Runnable>(
+                                    Math.max(1, Integer.getInteger(prefix + ".queueCapacity", queueCapacity))),
+                            new ThreadFactory() {
+                                @Override
+                                public Thread newThread(Runnable r) {
+                                    Thread t = factory.newThread(r);
+                                    t.setPriority(priority);
+                                    return t;
+                                }
+                            },
+                            new Overflow(OverflowPolicy.parse(System.getProperty(prefix + ".overflowPolicy"),
+                                    overflowPolicy))
+                    );
+                    lane.allowCoreThreadTimeOut(true);
+                    lanes.put(name, lane);
+                }
+            }
+        }
+        return lane;
+    }
+
+    /**
+     * Runs a task for the supplied event in the lane for that event. Unlike {@link #execute(Runnable)} the task is
+     * never run on the submitting thread, if the lane is saturated the task is rejected and the caller can decide
+     * when to run it.
+     *
+     * @param command the task.
+     * @param event   the event the task is for.
+     * @throws RejectedExecutionException if the lane is saturated or shut down.
+     */
+    public void execute(@NonNull Runnable command, @NonNull SCMEvent<?> event) {
+        lane(laneOf(event)).execute(new NoCallerRuns(command));
+    }
+
+    /**
+     * Runs a task for the supplied event in the lane for that event after the specified delay.
+     *
+     * @param command the task.
+     * @param event   the event the task is for.
+     * @param delay   the delay.
+     * @param unit    the units of the delay.
+     * @return the future of the task.
+     */
+    @NonNull
+    public ScheduledFuture<?> schedule(@NonNull Runnable command, @NonNull SCMEvent<?> event, long delay,
+                                      @NonNull TimeUnit unit) {
+        return schedule(lane(laneOf(event)), Executors.callable(command), delay, unit);
+    }
+
+    /**
+     * Runs the dispatch of an event in the lane for that event, applying the {@link OverflowPolicy} of the lane if it
+     * is saturated.
+     *
+     * @param task the dispatch of the event.
+     * @return {@code true} if the event was accepted, {@code false} if it was shed (in which case
+     * {@link Shedable#shed()} has been called).
+     */
+    public boolean tryExecute(@NonNull Shedable task) {
+        try {
+            lane(laneOf(task.getEvent())).execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            shed(task);
+            return false;
+        }
+    }
+
+    /**
+     * Records that an event has been shed.
+     *
+     * @param task the dispatch of the event.
+     */
+    private void shed(@NonNull Shedable task) {
+        long count = shedCount.incrementAndGet();
+        SCMEventMetrics.get().recordShed();
+        LOGGER.log(count == 1 || count % 1000 == 0 ? Level.WARNING : Level.FINE,
+                "SCM event queue is full, shedding {0} ({1} events shed so far)",
+                new Object[]{task.getEvent(), count});
+        task.shed();
+    }
+
+    /**
+     * Removes the oldest queued dispatch of an event that is a duplicate of or superseded by the supplied event.
+     *
+     * @param queue the queue to search.
+     * @param event the newer event.
+     * @return {@code true} if a queued dispatch was removed.
+     */
+    private boolean evictDuplicate(@NonNull BlockingQueue<Runnable> queue, @NonNull SCMEvent<?> event) {
+        // the iteration order of the queue is oldest first
+        for (Runnable queued : queue) {
+            if (queued instanceof Shedable && isDuplicate(((Shedable) queued).getEvent(), event)
+                    && queue.remove(queued)) {
+                shed((Shedable) queued);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a queued event can be dropped in favour of a newer event.
+     *
+     * @param older the queued event.
+     * @param newer the newer event.
+     * @return {@code true} if the older event is a duplicate of or superseded by the newer event.
+     */
+    private static boolean isDuplicate(@NonNull SCMEvent<?> older, @NonNull SCMEvent<?> newer) {
+        if (older.equals(newer)) {
+            return true;
+        }
+        return older instanceof SCMHeadEvent && newer instanceof SCMHeadEvent
+                && older.getTimestamp() <= newer.getTimestamp()
+                && ((SCMHeadEvent<?>) older).isSupersededBy((SCMHeadEvent<?>) newer);
+    }
+
+    /**
+     * Handles a task that could not be queued because the pool is saturated.
+     *
+     * @param r        the task.
+     * @param executor the pool.
+     * @param policy   the overflow policy of the pool.
+     */
+    private void rejected(@NonNull Runnable r, @NonNull ThreadPoolExecutor executor, @NonNull OverflowPolicy policy) {
+        if (r instanceof NoCallerRuns) {
+            throw new RejectedExecutionException(executor.isShutdown()
+                    ? "SCM event executor is shut down"
+                    : "SCM event queue is full");
+        }
+        if (r instanceof Shedable) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("SCM event executor is shut down");
+            }
+            switch (policy) {
+                case DROP:
+                    throw new RejectedExecutionException("SCM event queue is full");
+                case DROP_OLDEST_DUPLICATE:
+                    if (evictDuplicate(executor.getQueue(), ((Shedable) r).getEvent())
+                            && executor.getQueue().offer(r)) {
+                        return;
+                    }
+                    // no duplicate to make room, fall back to running on the submitting thread
+                    break;
+                default:
+                    break;
+            }
+        }
+        long count = rejectedCount.incrementAndGet();
+        if (executor.isShutdown()) {
+            LOGGER.log(Level.WARNING, "SCM event executor is shut down, discarding {0}", r);
+            return;
+        }
+        // log the first rejection loudly and then only periodically so that a storm does not flood the logs
+        LOGGER.log(count == 1 || count % 1000 == 0 ? Level.WARNING : Level.FINE,
+                "SCM event queue is full ({0} pending), running on the submitting thread ({1} times so far)",
+                new Object[]{executor.getQueue().size(), count});
+        r.run();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(@NonNull Runnable command) {
+        pool.execute(command);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> schedule(@NonNull Runnable command, long delay, @NonNull TimeUnit unit) {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <V> ScheduledFuture<V> schedule(@NonNull Callable<V> callable, long delay, @NonNull TimeUnit unit) {
+        return schedule(pool, callable, delay, unit);
+    }
+
+    /**
+     * Schedules a task to be handed off to the supplied pool once the delay has expired.
+     *
+     * @param target   the pool to run the task in.
+     * @param callable the task.
+     * @param delay    the delay.
+     * @param unit     the units of the delay.
+     * @param <V>      the type of result.
+     * @return the future of the task.
+     */
+    @NonNull
+    private <V> ScheduledFuture<V> schedule(@NonNull final ThreadPoolExecutor target, @NonNull Callable<V> callable,
+                                            long delay, @NonNull TimeUnit unit) {
+        final FutureTask<V> task = new FutureTask<V>(callable);
+        ScheduledFuture<?> trigger = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (task.isDone()) {
+                    return;
+                }
+                try {
+                    target.execute(new NoCallerRuns(task));
+                } catch (RejectedExecutionException e) {
+                    if (target.isShutdown() || scheduler.isShutdown()) {
+                        task.cancel(false);
+                        return;
+                    }
+                    // never run on the scheduler thread, that would hold up every other delayed task
+                    LOGGER.log(Level.FINE, "SCM event queue is full, deferring hand-off of {0}", task);
+                    scheduler.schedule(this, HAND_OFF_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, delay, unit);
+        return new HandOff<V>(task, trigger);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(@NonNull final Runnable command, long initialDelay, long period,
+                                                  @NonNull TimeUnit unit) {
+        return scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pool.execute(new NoCallerRuns(command));
+                } catch (RejectedExecutionException e) {
+                    // never run on the scheduler thread, skip this execution instead
+                    LOGGER.log(Level.FINE, "SCM event queue is full, skipping periodic {0}", command);
+                }
+            }
+        }, initialDelay, period, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(@NonNull final Runnable command, long initialDelay, long delay,
+                                                     @NonNull TimeUnit unit) {
+        return scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pool.execute(new NoCallerRuns(command));
+                } catch (RejectedExecutionException e) {
+                    // never run on the scheduler thread, skip this execution instead
+                    LOGGER.log(Level.FINE, "SCM event queue is full, skipping periodic {0}", command);
+                }
+            }
+        }, initialDelay, delay, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        scheduler.shutdown();
+        synchronized (lanes) {
+            pool.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes.values()) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = new ArrayList<Runnable>(scheduler.shutdownNow());
+        synchronized (lanes) {
+            result.addAll(pool.shutdownNow());
+        }
+        for (ThreadPoolExecutor lane : lanes.values()) {
+            result.addAll(lane.shutdownNow());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isTerminated() {
+        if (!scheduler.isTerminated() || !pool.isTerminated()) {
+            return false;
+        }
+        for (ThreadPoolExecutor lane : lanes.values()) {
+            if (!lane.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!scheduler.awaitTermination(timeout, unit)
+                || !pool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        for (ThreadPoolExecutor lane : lanes.values()) {
+            if (!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of tasks waiting to be run in all lanes.
+     *
+     * @return the number of tasks waiting to be run.
+     */
+    public int getQueueSize() {
+        int result = pool.getQueue().size();
+        for (ThreadPoolExecutor lane : lanes.values()) {
+            result += lane.getQueue().size();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of tasks waiting to be run in the named lane.
+     *
+     * @param name the lane name.
+     * @return the number of tasks waiting to be run in the lane or {@code 0} if the lane has not been used.
+     */
+    public int getQueueSize(@NonNull String name) {
+        ThreadPoolExecutor lane = DEFAULT_LANE.equals(name) ? pool : lanes.get(name);
+        return lane == null ? 0 : lane.getQueue().size();
+    }
+
+    /**
+     * Returns the capacity of the queue of tasks waiting to be run.
+     *
+     * @return the capacity of the queue of tasks waiting to be run.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Returns the number of delayed tasks that are not yet due.
+     *
+     * @return the number of delayed tasks that are not yet due.
+     */
+    public int getScheduledCount() {
+        return scheduler.getQueue().size();
+    }
+
+    /**
+     * Returns the approximate number of threads actively running tasks in all lanes.
+     *
+     * @return the approximate number of threads actively running tasks.
+     */
+    public int getActiveCount() {
+        int result = pool.getActiveCount();
+        for (ThreadPoolExecutor lane : lanes.values()) {
+            result += lane.getActiveCount();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the current number of threads in all lanes.
+     *
+     * @return the current number of threads in all lanes.
+     */
+    public int getPoolSize() {
+        int result = pool.getPoolSize();
+        for (ThreadPoolExecutor lane : lanes.values()) {
+            result += lane.getPoolSize();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the largest number of threads that have ever simultaneously been in the {@link #DEFAULT_LANE}.
+     *
+     * @return the largest number of threads that have ever simultaneously been in the pool.
+     */
+    public int getLargestPoolSize() {
+        return pool.getLargestPoolSize();
+    }
+
+    /**
+     * Returns the approximate number of tasks that have completed in all lanes.
+     *
+     * @return the approximate number of tasks that have completed.
+     */
+    public long getCompletedTaskCount() {
+        long result = pool.getCompletedTaskCount();
+        for (ThreadPoolExecutor lane : lanes.values()) {
+            result += lane.getCompletedTaskCount();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of tasks that could not be queued and were run on the submitting thread instead.
+     *
+     * @return the number of tasks that could not be queued.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the number of events that were shed by an {@link OverflowPolicy}.
+     *
+     * @return the number of events that were shed.
+     */
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    /**
+     * What to do with the dispatch of an event submitted through {@link #tryExecute(Shedable)} when the lane it is
+     * routed to is saturated. Tasks submitted through any other method are always run on the submitting thread.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Run the dispatch on the submitting thread, which pushes back on the event source. No event is lost.
+         */
+        CALLER_RUNS,
+        /**
+         * Shed the new event.
+         */
+        DROP,
+        /**
+         * Shed the oldest queued event that the new event duplicates or supersedes (see
+         * {@link SCMHeadEvent#isSupersededBy(SCMHeadEvent)}) to make room for the new event, falling back to
+         * {@link #CALLER_RUNS} if there is no such event.
+         */
+        DROP_OLDEST_DUPLICATE;
+
+        /**
+         * Parses a policy from a system property value.
+         *
+         * @param value        the value.
+         * @param defaultValue the policy to use if the value is missing or invalid.
+         * @return the policy.
+         */
+        @NonNull
+        static OverflowPolicy parse(String value, @NonNull OverflowPolicy defaultValue) {
+            if (value == null || value.trim().isEmpty()) {
+                return defaultValue;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Unknown SCM event overflow policy {0}, using {1}",
+                        new Object[]{value, defaultValue});
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * The dispatch of an event that may be shed under load.
+     */
+    public interface Shedable extends Runnable {
+        /**
+         * Returns the event being dispatched.
+         *
+         * @return the event being dispatched.
+         */
+        @NonNull
+        SCMEvent<?> getEvent();
+
+        /**
+         * Called instead of {@link #run()} if the event is shed.
+         */
+        void shed();
+    }
+
+    /**
+     * Applies an {@link OverflowPolicy} to tasks rejected by a saturated lane.
+     */
+    private class Overflow implements RejectedExecutionHandler {
+        /**
+         * The policy.
+         */
+        @NonNull
+        private final OverflowPolicy policy;
+
+        /**
+         * Constructor.
+         *
+         * @param policy the policy.
+         */
+        private Overflow(@NonNull OverflowPolicy policy) {
+            this.policy = policy;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejected(r, executor, policy);
+        }
+    }
+
+    /**
+     * Marks a task that must never be run on the submitting thread when the pool is saturated, it is rejected
+     * instead.
+     */
+    private static final class NoCallerRuns implements Runnable {
+        /**
+         * The task.
+         */
+        @NonNull
+        private final Runnable delegate;
+
+        /**
+         * Constructor.
+         *
+         * @param delegate the task.
+         */
+        private NoCallerRuns(@NonNull Runnable delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            delegate.run();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    /**
+     * A {@link ScheduledFuture} for a delayed task that will be handed off to the pool when it becomes due.
+     *
+     * @param <V> the type of result.
+     */
+    private static class HandOff<V> implements ScheduledFuture<V> {
+        /**
+         * The task that will be run in the pool.
+         */
+        @NonNull
+        private final FutureTask<V> task;
+        /**
+         * The scheduled hand-off.
+         */
+        @NonNull
+        private final ScheduledFuture<?> trigger;
+
+        /**
+         * Constructor.
+         *
+         * @param task    the task that will be run in the pool.
+         * @param trigger the scheduled hand-off.
+         */
+        private HandOff(@NonNull FutureTask<V> task, @NonNull ScheduledFuture<?> trigger) {
+            this.task = task;
+            this.trigger = trigger;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getDelay(@NonNull TimeUnit unit) {
+            return trigger.getDelay(unit);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(@NonNull Delayed o) {
+            long diff = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            trigger.cancel(false);
+            return task.cancel(mayInterruptIfRunning);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return task.get();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public V get(long timeout, @NonNull TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+    }
+}
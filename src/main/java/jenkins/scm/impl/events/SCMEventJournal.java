@@ -0,0 +1,893 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.Items;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.api.SCMHeadEvent;
+import jenkins.scm.api.SCMNavigatorEvent;
+import jenkins.scm.api.SCMSourceEvent;
+import net.jcip.annotations.GuardedBy;
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * An append-only on-disk journal of the {@link SCMEvent} instances that have been accepted for dispatch, so that
+ * events which were still queued or being dispatched when Jenkins stopped are fired again when Jenkins starts rather
+ * than being lost (which would otherwise leave the consumers waiting for their next periodic scan).
+ * <p>
+ * The journal is disabled by default, set the {@code jenkins.scm.impl.events.SCMEventJournal.enabled} system property
+ * to {@code true} to enable it. Only events that opt in by returning a {@link SCMEvent#memento()} are journaled, the
+ * event itself (which may hold provider payloads or credentials) is never written to disk. The journal is written to
+ * segment files in {@code JENKINS_HOME/scm-events} by a background thread so that firing an event never waits for
+ * disk I/O. Each record is length prefixed: an {@link #ENQUEUED} record holds the memento serialized with
+ * {@link Items#XSTREAM} and a {@link #COMPLETED} record marks the event as dispatched (or coalesced, or shed). A
+ * segment is deleted once every event recorded in it has completed. The following system properties tune the
+ * journal:
+ * <ul>
+ * <li>{@code jenkins.scm.impl.events.SCMEventJournal.fsync} one of {@link FsyncPolicy} (default
+ * {@link FsyncPolicy#INTERVAL})</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventJournal.fsyncIntervalMillis} (default
+ * {@value #DEFAULT_FSYNC_INTERVAL_MILLIS})</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventJournal.segmentBytes} the size after which a new segment is started
+ * (default {@value #DEFAULT_SEGMENT_BYTES})</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventJournal.maxRecordBytes} events whose memento serializes to more than
+ * this are not journaled (default {@value #DEFAULT_MAX_RECORD_BYTES})</li>
+ * <li>{@code jenkins.scm.impl.events.SCMEventJournal.queueCapacity} the number of records that can be waiting for the
+ * background thread, records beyond this are not journaled (default {@value #DEFAULT_QUEUE_CAPACITY})</li>
+ * </ul>
+ * Replay is at-least-once: an event that was dispatched just before a crash may be fired again.
+ *
+ * @since FIXME
+ */
+@Restricted(NoExternalUse.class)
+public class SCMEventJournal {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SCMEventJournal.class.getName());
+    /**
+     * Whether the journal is enabled.
+     */
+    private static final boolean ENABLED = Boolean.getBoolean(SCMEventJournal.class.getName() + ".enabled");
+    /**
+     * The default for the {@code fsyncIntervalMillis} property.
+     */
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000L;
+    /**
+     * The default for the {@code segmentBytes} property.
+     */
+    public static final long DEFAULT_SEGMENT_BYTES = 16L * 1024 * 1024;
+    /**
+     * The default for the {@code maxRecordBytes} property.
+     */
+    public static final int DEFAULT_MAX_RECORD_BYTES = 1024 * 1024;
+    /**
+     * The default for the {@code queueCapacity} property.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    /**
+     * How long {@link #close()} waits for the records that are still queued to be written.
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 10L;
+    /**
+     * How long {@link #replay()} waits for the replayed events to be written before deleting the old segments.
+     */
+    private static final long REPLAY_TIMEOUT_SECONDS = 60L;
+    /**
+     * The magic number at the start of every segment file.
+     */
+    private static final int MAGIC = 0x53434d4a; // SCMJ
+    /**
+     * The version of the segment format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * The record type of an event being accepted for dispatch.
+     */
+    static final byte ENQUEUED = 1;
+    /**
+     * The record type of an event no longer needing dispatch.
+     */
+    static final byte COMPLETED = 2;
+    /**
+     * The names of segment files.
+     */
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.journal");
+    /**
+     * The singleton instance.
+     */
+    private static final SCMEventJournal INSTANCE = new SCMEventJournal(null);
+
+    /**
+     * The directory holding the segments or {@code null} to use {@code JENKINS_HOME/scm-events}.
+     */
+    @CheckForNull
+    private final File directory;
+    /**
+     * The fsync policy.
+     */
+    @NonNull
+    private final FsyncPolicy fsync;
+    /**
+     * The minimum interval between fsyncs for {@link FsyncPolicy#INTERVAL}.
+     */
+    private final long fsyncIntervalMillis;
+    /**
+     * The size after which a new segment is started.
+     */
+    private final long segmentBytes;
+    /**
+     * The largest record that will be written.
+     */
+    private final int maxRecordBytes;
+    /**
+     * The background thread that writes the records.
+     */
+    @NonNull
+    private final ThreadPoolExecutor writer;
+    /**
+     * Set once {@link #close()} has been called, no further records are accepted.
+     */
+    private volatile boolean closed;
+    /**
+     * Set once {@link #close()} has written all the queued records, no segment will be opened again.
+     */
+    @GuardedBy("this")
+    private boolean terminated;
+    /**
+     * The number of the segment being written, or {@code -1} if not open.
+     */
+    @GuardedBy("this")
+    private int current = -1;
+    /**
+     * The stream of the segment being written.
+     */
+    @GuardedBy("this")
+    private FileOutputStream file;
+    /**
+     * The buffered view of {@link #file}.
+     */
+    @GuardedBy("this")
+    private DataOutputStream out;
+    /**
+     * The number of bytes written to the current segment.
+     */
+    @GuardedBy("this")
+    private long written;
+    /**
+     * The sequence number of the last event recorded in the current segment.
+     */
+    @GuardedBy("this")
+    private int sequence;
+    /**
+     * When the current segment was last fsynced.
+     */
+    @GuardedBy("this")
+    private long lastSync;
+    /**
+     * The number of events recorded in each segment of this session that have not completed, keyed by segment
+     * number.
+     */
+    @GuardedBy("this")
+    private final Map<Integer, Integer> outstanding = new HashMap<Integer, Integer>();
+    /**
+     * The segments from previous sessions that have not been replayed yet.
+     */
+    @GuardedBy("this")
+    private final List<Integer> previous = new ArrayList<Integer>();
+    /**
+     * The entries recorded by the thread that is running {@link #replay()}, {@code null} on every other thread.
+     */
+    private final ThreadLocal<List<Entry>> replaying = new ThreadLocal<List<Entry>>();
+    /**
+     * Set if writing fails so that we stop trying.
+     */
+    @GuardedBy("this")
+    private boolean broken;
+
+    /**
+     * Constructor.
+     *
+     * @param directory the directory to hold the segments or {@code null} to use {@code JENKINS_HOME/scm-events}.
+     */
+    SCMEventJournal(@CheckForNull File directory) {
+        String prefix = SCMEventJournal.class.getName();
+        this.directory = directory;
+        this.fsync = FsyncPolicy.parse(System.getProperty(prefix + ".fsync"));
+        this.fsyncIntervalMillis = Math.max(0L, Long.getLong(prefix + ".fsyncIntervalMillis",
+                DEFAULT_FSYNC_INTERVAL_MILLIS));
+        this.segmentBytes = Math.max(1024L, Long.getLong(prefix + ".segmentBytes", DEFAULT_SEGMENT_BYTES));
+        this.maxRecordBytes = Math.max(1024, Integer.getInteger(prefix + ".maxRecordBytes",
+                DEFAULT_MAX_RECORD_BYTES));
+        this.writer = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(Math.max(1, Integer.getInteger(prefix + ".queueCapacity",
+                        DEFAULT_QUEUE_CAPACITY))),
+                new NamingThreadFactory(new DaemonThreadFactory(), SCMEventJournal.class.getSimpleName())
+        );
+        this.writer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the journal.
+     *
+     * @return the journal or {@code null} if the journal is disabled.
+     */
+    @CheckForNull
+    public static SCMEventJournal get() {
+        return ENABLED ? INSTANCE : null;
+    }
+
+    /**
+     * Fires the events left unfinished by the previous session.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void replayUnfinished() {
+        SCMEventJournal journal = get();
+        if (journal != null) {
+            journal.replay();
+        }
+    }
+
+    /**
+     * Closes the journal.
+     */
+    @Terminator
+    public static void shutdown() {
+        SCMEventJournal journal = get();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Records that an event has been accepted for dispatch. The record is written in the background.
+     *
+     * @param event the event.
+     * @return the entry to pass to {@link #recordCompleted(Entry)} or {@code null} if the event will not be
+     * journaled.
+     */
+    @CheckForNull
+    public Entry recordEnqueued(@NonNull SCMEvent<?> event) {
+        Entry entry = enqueue(event);
+        List<Entry> replayed = replaying.get();
+        if (replayed != null) {
+            replayed.add(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Queues the record of an event being accepted for dispatch.
+     *
+     * @param event the event.
+     * @return the entry or {@code null} if the event will not be journaled.
+     */
+    @CheckForNull
+    private Entry enqueue(@NonNull SCMEvent<?> event) {
+        if (closed) {
+            return null;
+        }
+        final SCMEvent.Memento memento = event.memento();
+        if (memento == null) {
+            // the event has not opted in to being persisted
+            return null;
+        }
+        final Entry entry = new Entry(String.valueOf(event));
+        return submit(new Runnable() {
+            @Override
+            public void run() {
+                writeEnqueued(entry, memento);
+            }
+        }) ? entry : null;
+    }
+
+    /**
+     * Records that an event no longer needs to be dispatched. The record is written in the background.
+     *
+     * @param entry the entry returned from {@link #recordEnqueued(SCMEvent)}.
+     */
+    public void recordCompleted(@NonNull final Entry entry) {
+        if (closed) {
+            return;
+        }
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                writeCompleted(entry);
+            }
+        });
+    }
+
+    /**
+     * Queues a write for the background thread.
+     *
+     * @param write the write.
+     * @return {@code true} if the write was queued.
+     */
+    private boolean submit(@NonNull Runnable write) {
+        try {
+            writer.execute(write);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // never write on the calling thread, that would make firing events wait for the disk
+            LOGGER.log(Level.FINE, "SCM event journal queue is full or closed, not journaling", e);
+            return false;
+        }
+    }
+
+    /**
+     * Waits for all the records queued so far to be written.
+     *
+     * @param timeout how long to wait.
+     * @param unit    the units of the timeout.
+     * @return {@code true} if the records were written within the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitWritten(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        if (!submit(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        })) {
+            return closed;
+        }
+        return latch.await(timeout, unit);
+    }
+
+    /**
+     * Writes the record of an event being accepted for dispatch. Only called from the background thread.
+     *
+     * @param entry   the entry of the event.
+     * @param memento the memento of the event.
+     */
+    private void writeEnqueued(@NonNull Entry entry, @NonNull SCMEvent.Memento memento) {
+        byte[] xml;
+        try {
+            xml = Items.XSTREAM.toXML(memento).getBytes("UTF-8");
+        } catch (RuntimeException e) {
+            // XStream reports all kinds of problems as runtime exceptions
+            LOGGER.log(Level.FINE, "Could not serialize " + entry + " to the journal", e);
+            return;
+        } catch (IOException e) {
+            throw new IllegalStateException("UTF-8 is a required encoding", e);
+        }
+        if (xml.length > maxRecordBytes) {
+            LOGGER.log(Level.FINE, "Not journaling {0} as it serializes to {1} bytes", new Object[]{entry, xml.length});
+            return;
+        }
+        synchronized (this) {
+            if (!open()) {
+                return;
+            }
+            long id = ((long) current << 32) | (++sequence & 0xffffffffL);
+            try {
+                out.writeByte(ENQUEUED);
+                out.writeLong(id);
+                out.writeInt(xml.length);
+                out.write(xml);
+                written += 1 + 8 + 4 + xml.length;
+                sync();
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            entry.id = id;
+            Integer count = outstanding.get(current);
+            outstanding.put(current, count == null ? 1 : count + 1);
+            if (written >= segmentBytes) {
+                // a burst of events without any completions must not grow a segment without limit
+                rotate();
+            }
+        }
+    }
+
+    /**
+     * Writes the record of an event no longer needing to be dispatched. Only called from the background thread.
+     *
+     * @param entry the entry of the event.
+     */
+    private void writeCompleted(@NonNull Entry entry) {
+        synchronized (this) {
+            long id = entry.id;
+            if (id == 0L || !open()) {
+                // never written
+                return;
+            }
+            try {
+                out.writeByte(COMPLETED);
+                out.writeLong(id);
+                written += 1 + 8;
+                sync();
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            int segment = (int) (id >>> 32);
+            Integer count = outstanding.get(segment);
+            if (count != null) {
+                if (count <= 1) {
+                    outstanding.remove(segment);
+                    if (segment != current && !segmentFile(segment).delete()) {
+                        LOGGER.log(Level.FINE, "Could not delete completed journal segment {0}", segment);
+                    }
+                } else {
+                    outstanding.put(segment, count - 1);
+                }
+            }
+            if (written >= segmentBytes) {
+                rotate();
+            }
+        }
+    }
+
+    /**
+     * Fires again all the events recorded by previous sessions that did not complete, then deletes the segments of
+     * the previous sessions. As the current segment is written in the background, and an event is not journaled at
+     * all when the writer is saturated, the old segments are only deleted once every replayed event has been written
+     * to the current segment; otherwise they are kept so that their events are replayed again by the next session.
+     */
+    void replay() {
+        List<File> segments = takePrevious();
+        List<Entry> entries = new ArrayList<Entry>();
+        boolean journaled = true;
+        int count = 0;
+        replaying.set(entries);
+        try {
+            for (SCMEvent<?> event : restore(segments)) {
+                int before = entries.size();
+                boolean accepted;
+                if (event instanceof SCMHeadEvent) {
+                    accepted = SCMHeadEvent.tryFireNow((SCMHeadEvent<?>) event);
+                } else if (event instanceof SCMSourceEvent) {
+                    accepted = SCMSourceEvent.tryFireNow((SCMSourceEvent<?>) event);
+                } else if (event instanceof SCMNavigatorEvent) {
+                    accepted = SCMNavigatorEvent.tryFireNow((SCMNavigatorEvent<?>) event);
+                } else {
+                    LOGGER.log(Level.WARNING, "Cannot replay journaled SCM event {0} of unsupported type {1}",
+                            new Object[]{event, event.getClass()});
+                    continue;
+                }
+                count++;
+                // the dispatcher, and with it the entry, is created on this thread even when the event is held back
+                // for coalescing, so exactly one entry is recorded unless the event was shed or coalesced into an
+                // event that is already held back (an entry is null if the writer queue was full)
+                if (!accepted || entries.size() != before + 1 || entries.get(before) == null) {
+                    journaled = false;
+                }
+            }
+        } finally {
+            replaying.remove();
+        }
+        if (count > 0) {
+            LOGGER.log(Level.INFO, "Replayed {0} SCM events that had not been processed before the last shutdown",
+                    count);
+        }
+        if (journaled && !entries.isEmpty()) {
+            try {
+                journaled = awaitWritten(REPLAY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                journaled = false;
+            }
+            for (Entry entry : entries) {
+                // the latch in awaitWritten makes the id assigned by the background thread visible
+                if (entry.id == 0L) {
+                    journaled = false;
+                }
+            }
+        }
+        if (!journaled) {
+            LOGGER.log(Level.WARNING, "Not all replayed SCM events could be journaled, keeping {0} for the next "
+                    + "startup", segments);
+            return;
+        }
+        for (File segment : segments) {
+            if (!segment.delete()) {
+                LOGGER.log(Level.WARNING, "Could not delete replayed journal segment {0}", segment);
+            }
+        }
+    }
+
+    /**
+     * Returns the segments left by previous sessions, oldest first. Each segment is only returned once.
+     *
+     * @return the segments left by previous sessions.
+     */
+    @NonNull
+    synchronized List<File> takePrevious() {
+        List<File> segments = new ArrayList<File>();
+        if (open()) {
+            for (Integer n : previous) {
+                segments.add(segmentFile(n));
+            }
+            previous.clear();
+        }
+        return segments;
+    }
+
+    /**
+     * Restores the events from the supplied segments that did not complete.
+     *
+     * @param segments the segments, oldest first.
+     * @return the events that did not complete, oldest first.
+     */
+    @NonNull
+    static List<SCMEvent<?>> restore(@NonNull List<File> segments) {
+        Map<Long, byte[]> unfinished = new LinkedHashMap<Long, byte[]>();
+        for (File segment : segments) {
+            read(segment, unfinished);
+        }
+        List<SCMEvent<?>> result = new ArrayList<SCMEvent<?>>(unfinished.size());
+        for (Map.Entry<Long, byte[]> entry : unfinished.entrySet()) {
+            SCMEvent<?> event;
+            try {
+                Object memento = Items.XSTREAM.fromXML(new String(entry.getValue(), "UTF-8"));
+                if (!(memento instanceof SCMEvent.Memento)) {
+                    LOGGER.log(Level.WARNING, "Ignoring journaled SCM event {0} which restored as {1}",
+                            new Object[]{entry.getKey(), memento == null ? null : memento.getClass()});
+                    continue;
+                }
+                event = ((SCMEvent.Memento) memento).restore();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not restore journaled SCM event " + entry.getKey(), e);
+                continue;
+            } catch (IOException e) {
+                throw new IllegalStateException("UTF-8 is a required encoding", e);
+            }
+            if (event != null) {
+                result.add(event);
+            } else {
+                LOGGER.log(Level.FINE, "Journaled SCM event {0} can no longer be recreated", entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a segment, adding the events it records and removing the events it records as completed.
+     *
+     * @param segment    the segment.
+     * @param unfinished the unfinished events keyed by journal id.
+     */
+    private static void read(@NonNull File segment, @NonNull Map<Long, byte[]> unfinished) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.log(Level.WARNING, "Ignoring unrecognized journal segment {0}", segment);
+                return;
+            }
+            while (true) {
+                byte type = in.readByte();
+                long id = in.readLong();
+                if (type == ENQUEUED) {
+                    int length = in.readInt();
+                    if (length < 0) {
+                        throw new IOException("Corrupt record length " + length);
+                    }
+                    byte[] xml = new byte[length];
+                    in.readFully(xml);
+                    unfinished.put(id, xml);
+                } else if (type == COMPLETED) {
+                    unfinished.remove(id);
+                } else {
+                    throw new IOException("Corrupt record type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // end of segment, possibly with a torn record from a crash which we ignore
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read all of journal segment " + segment, e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Closes the journal once the records that are already queued have been written. This is terminal: no further
+     * records are accepted and no segment will be opened again.
+     */
+    void close() {
+        closed = true;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.log(Level.WARNING, "Timed out writing the SCM event journal, the most recent events may be "
+                        + "replayed even though they have been processed");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeSegment();
+    }
+
+    /**
+     * Closes the current segment for good.
+     */
+    private synchronized void closeSegment() {
+        terminated = true;
+        if (out != null) {
+            try {
+                out.flush();
+                file.getFD().sync();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not sync the SCM event journal", e);
+            }
+            IOUtils.closeQuietly(out);
+            out = null;
+            file = null;
+        }
+        current = -1;
+    }
+
+    /**
+     * Opens a new segment if there is no current segment.
+     *
+     * @return {@code true} if there is a current segment.
+     */
+    @GuardedBy("this")
+    private boolean open() {
+        if (broken || terminated) {
+            return false;
+        }
+        if (out != null) {
+            return true;
+        }
+        File dir = directory();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            fail(new IOException("Could not create " + dir));
+            return false;
+        }
+        int max = current;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                Matcher m = SEGMENT_NAME.matcher(f.getName());
+                if (m.matches()) {
+                    int n = Integer.parseInt(m.group(1));
+                    if (current == -1 && !outstanding.containsKey(n) && !previous.contains(n)) {
+                        // only the first open of the session finds segments of previous sessions
+                        previous.add(n);
+                    }
+                    max = Math.max(max, n);
+                }
+            }
+        }
+        Collections.sort(previous);
+        return start(max + 1);
+    }
+
+    /**
+     * Starts a new segment.
+     *
+     * @param n the segment number.
+     * @return {@code true} if the segment was started.
+     */
+    @GuardedBy("this")
+    private boolean start(int n) {
+        try {
+            file = new FileOutputStream(segmentFile(n));
+            out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+        current = n;
+        written = 8;
+        sequence = 0;
+        lastSync = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Starts a new segment, deleting the current segment if nothing in it is outstanding.
+     */
+    @GuardedBy("this")
+    private void rotate() {
+        int old = current;
+        IOUtils.closeQuietly(out);
+        out = null;
+        file = null;
+        if (!start(old + 1)) {
+            return;
+        }
+        if (!outstanding.containsKey(old) && !segmentFile(old).delete()) {
+            LOGGER.log(Level.FINE, "Could not delete completed journal segment {0}", old);
+        }
+    }
+
+    /**
+     * Pushes the written records to the operating system and to disk as required by the {@link FsyncPolicy}.
+     *
+     * @throws IOException if something goes wrong.
+     */
+    @GuardedBy("this")
+    private void sync() throws IOException {
+        out.flush();
+        switch (fsync) {
+            case ALWAYS:
+                file.getFD().sync();
+                break;
+            case INTERVAL:
+                long now = System.currentTimeMillis();
+                if (now - lastSync >= fsyncIntervalMillis) {
+                    file.getFD().sync();
+                    lastSync = now;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Disables the journal after a write failure.
+     *
+     * @param e the failure.
+     */
+    @GuardedBy("this")
+    private void fail(@NonNull IOException e) {
+        LOGGER.log(Level.WARNING, "Could not write to the SCM event journal, journaling is disabled until restart", e);
+        broken = true;
+        IOUtils.closeQuietly(out);
+        out = null;
+        file = null;
+    }
+
+    /**
+     * Returns the directory holding the segments.
+     *
+     * @return the directory holding the segments.
+     */
+    @NonNull
+    private File directory() {
+        return directory != null ? directory : new File(Jenkins.getActiveInstance().getRootDir(), "scm-events");
+    }
+
+    /**
+     * Returns the file of a segment.
+     *
+     * @param n the segment number.
+     * @return the file of the segment.
+     */
+    @NonNull
+    private File segmentFile(int n) {
+        return new File(directory(), "segment-" + n + ".journal");
+    }
+
+    /**
+     * The handle of an event that has been accepted for dispatch, used to record its completion.
+     */
+    public static final class Entry {
+        /**
+         * The description of the event, for logging.
+         */
+        @NonNull
+        private final String description;
+        /**
+         * The journal id of the event or {@code 0} if the event has not been written (yet). Only accessed from the
+         * background thread.
+         */
+        private long id;
+
+        /**
+         * Constructor.
+         *
+         * @param description the description of the event.
+         */
+        private Entry(@NonNull String description) {
+            this.description = description;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * When to force journal writes to disk.
+     */
+    public enum FsyncPolicy {
+        /**
+         * After every record, safest and slowest.
+         */
+        ALWAYS,
+        /**
+         * At most once per {@code fsyncIntervalMillis}, a crash of the machine can lose the most recent events.
+         */
+        INTERVAL,
+        /**
+         * Leave it to the operating system, a crash of the machine can lose any events not yet written back.
+         */
+        NEVER;
+
+        /**
+         * Parses a policy from a system property value.
+         *
+         * @param value the value.
+         * @return the policy, {@link #INTERVAL} if the value is missing or invalid.
+         */
+        @NonNull
+        static FsyncPolicy parse(@CheckForNull String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return INTERVAL;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Unknown SCM event journal fsync policy {0}, using {1}",
+                        new Object[]{value, INTERVAL});
+                return INTERVAL;
+            }
+        }
+    }
+}
@@ -0,0 +1,589 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.api.SCMEventListener;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Collects statistics about the delivery of {@link SCMEvent} instances to each {@link SCMEventListener} so that a
+ * listener that is slow or failing can be identified, together with the depth of the dispatch queue and how far
+ * behind the SCM the dispatch of each class and type of event is running. The statistics are exposed through
+ * {@link SCMEventMetricsAction} and JMX.
+ *
+ * @since FIXME
+ */
+@Restricted(NoExternalUse.class)
+public class SCMEventMetrics implements SCMEventMetricsMXBean {
+
+    /**
+     * The singleton instance.
+     */
+    private static final SCMEventMetrics INSTANCE = new SCMEventMetrics();
+
+    /**
+     * The statistics keyed by listener class name and then event class name, the array is indexed by
+     * {@link SCMEvent.Type#ordinal()}. Keyed by name rather than class so that the statistics do not pin the class
+     * loaders of plugins that have been unloaded ({@link Class#getName()} is cached so recording does not allocate).
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, ListenerStats[]>> listeners =
+            new ConcurrentHashMap<String, ConcurrentMap<String, ListenerStats[]>>();
+    /**
+     * The dispatch statistics keyed by event class name, the array is indexed by {@link SCMEvent.Type#ordinal()}.
+     */
+    private final ConcurrentMap<String, EventStats[]> events = new ConcurrentHashMap<String, EventStats[]>();
+    /**
+     * The number of events that have been accepted for dispatch but not yet started.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+    /**
+     * The number of events currently being dispatched.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /**
+     * The total number of events accepted for dispatch.
+     */
+    private final AtomicLong enqueued = new AtomicLong();
+    /**
+     * The total number of events that have been dispatched.
+     */
+    private final AtomicLong completed = new AtomicLong();
+    /**
+     * The total number of events that were accepted for dispatch but discarded before being dispatched.
+     */
+    private final AtomicLong discarded = new AtomicLong();
+    /**
+     * The total number of events that were shed because the dispatch queue was full.
+     */
+    private final AtomicLong shed = new AtomicLong();
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return the singleton instance.
+     */
+    @NonNull
+    public static SCMEventMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the delivery of an event to a listener.
+     *
+     * @param listener the listener.
+     * @param event    the event.
+     * @param nanos    how long the listener took to process the event.
+     * @param error    {@code true} if the listener propagated an exception.
+     */
+    public void recordListener(@NonNull SCMEventListener listener, @NonNull SCMEvent<?> event, long nanos,
+                               boolean error) {
+        String listenerName = listener.getClass().getName();
+        String eventName = event.getClass().getName();
+        ConcurrentMap<String, ListenerStats[]> byEvent = listeners.get(listenerName);
+        if (byEvent == null) {
+            ConcurrentMap<String, ListenerStats[]> created = new ConcurrentHashMap<String, ListenerStats[]>();
+            byEvent = listeners.putIfAbsent(listenerName, created);
+            if (byEvent == null) {
+                byEvent = created;
+            }
+        }
+        ListenerStats[] byType = byEvent.get(eventName);
+        if (byType == null) {
+            SCMEvent.Type[] types = SCMEvent.Type.values();
+            ListenerStats[] created = new ListenerStats[types.length];
+            for (SCMEvent.Type type : types) {
+                created[type.ordinal()] = new ListenerStats(listenerName, eventName, type);
+            }
+            byType = byEvent.putIfAbsent(eventName, created);
+            if (byType == null) {
+                byType = created;
+            }
+        }
+        byType[event.getType().ordinal()].record(nanos, error);
+    }
+
+    /**
+     * Records that an event has been accepted for dispatch.
+     */
+    public void recordEnqueued() {
+        enqueued.incrementAndGet();
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Records that an event which was accepted for dispatch will never be dispatched, e.g. because a newer event
+     * superseded it.
+     */
+    public void recordDiscarded() {
+        discarded.incrementAndGet();
+        queued.decrementAndGet();
+    }
+
+    /**
+     * Records that an event was shed because the dispatch queue was full. The event will also be recorded through
+     * {@link #recordDiscarded()}.
+     */
+    public void recordShed() {
+        shed.incrementAndGet();
+    }
+
+    /**
+     * Records that the dispatch of an event has started.
+     */
+    public void recordStarted() {
+        queued.decrementAndGet();
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records the completion of the dispatch of an event.
+     *
+     * @param event         the event.
+     * @param originNanos   the time from {@link SCMEvent#getTimestamp()} until the dispatch started.
+     * @param queueNanos    the time from the event being accepted for dispatch until the dispatch started.
+     * @param dispatchNanos the time from the dispatch starting until all the listeners have been notified.
+     */
+    public void recordCompleted(@NonNull SCMEvent<?> event, long originNanos, long queueNanos, long dispatchNanos) {
+        inFlight.decrementAndGet();
+        completed.incrementAndGet();
+        String eventName = event.getClass().getName();
+        EventStats[] byType = events.get(eventName);
+        if (byType == null) {
+            SCMEvent.Type[] types = SCMEvent.Type.values();
+            EventStats[] created = new EventStats[types.length];
+            for (SCMEvent.Type type : types) {
+                created[type.ordinal()] = new EventStats(eventName, type);
+            }
+            byType = events.putIfAbsent(eventName, created);
+            if (byType == null) {
+                byType = created;
+            }
+        }
+        byType[event.getType().ordinal()].record(originNanos, queueNanos, dispatchNanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueued() {
+        return Math.max(0, queued.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInFlight() {
+        return Math.max(0, inFlight.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getEnqueued() {
+        return enqueued.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getShed() {
+        return shed.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NonNull
+    public List<EventStats> getEvents() {
+        List<EventStats> result = new ArrayList<EventStats>();
+        for (EventStats[] byType : events.values()) {
+            for (EventStats stats : byType) {
+                if (stats.getCount() > 0L) {
+                    result.add(stats);
+                }
+            }
+        }
+        Collections.sort(result, new Comparator<EventStats>() {
+            @Override
+            public int compare(EventStats o1, EventStats o2) {
+                int r = o1.getEvent().compareTo(o2.getEvent());
+                return r == 0 ? o1.getType().compareTo(o2.getType()) : r;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @NonNull
+    public List<ListenerStats> getListeners() {
+        List<ListenerStats> result = new ArrayList<ListenerStats>();
+        for (ConcurrentMap<String, ListenerStats[]> byEvent : listeners.values()) {
+            for (ListenerStats[] byType : byEvent.values()) {
+                for (ListenerStats stats : byType) {
+                    if (stats.getInvocations() > 0L) {
+                        result.add(stats);
+                    }
+                }
+            }
+        }
+        Collections.sort(result, new Comparator<ListenerStats>() {
+            @Override
+            public int compare(ListenerStats o1, ListenerStats o2) {
+                int r = o1.getListener().compareTo(o2.getListener());
+                if (r == 0) {
+                    r = o1.getEvent().compareTo(o2.getEvent());
+                }
+                return r == 0 ? o1.getType().compareTo(o2.getType()) : r;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        listeners.clear();
+        events.clear();
+    }
+
+    /**
+     * The dispatch lag statistics for one combination of event class and event type.
+     */
+    @ExportedBean
+    public static class EventStats {
+        /**
+         * The event class name.
+         */
+        @NonNull
+        private final String event;
+        /**
+         * The event type.
+         */
+        @NonNull
+        private final String type;
+        /**
+         * The time from {@link SCMEvent#getTimestamp()} until the dispatch started.
+         */
+        private final LatencyHistogram originLag = new LatencyHistogram();
+        /**
+         * The time from the event being accepted for dispatch until the dispatch started.
+         */
+        private final LatencyHistogram queueLag = new LatencyHistogram();
+        /**
+         * The time from the dispatch starting until all the listeners have been notified.
+         */
+        private final LatencyHistogram dispatchTime = new LatencyHistogram();
+
+        /**
+         * Constructor.
+         *
+         * @param event the event class name.
+         * @param type  the event type.
+         */
+        private EventStats(@NonNull String event, @NonNull SCMEvent.Type type) {
+            this.event = event;
+            this.type = type.name();
+        }
+
+        /**
+         * Records a dispatch.
+         *
+         * @param originNanos   the time from the event timestamp until the dispatch started.
+         * @param queueNanos    the time from the event being accepted until the dispatch started.
+         * @param dispatchNanos the time taken by the dispatch.
+         */
+        private void record(long originNanos, long queueNanos, long dispatchNanos) {
+            originLag.record(originNanos);
+            queueLag.record(queueNanos);
+            dispatchTime.record(dispatchNanos);
+        }
+
+        /**
+         * Returns the event class name.
+         *
+         * @return the event class name.
+         */
+        @Exported
+        @NonNull
+        public String getEvent() {
+            return event;
+        }
+
+        /**
+         * Returns the event type.
+         *
+         * @return the event type.
+         */
+        @Exported
+        @NonNull
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the number of events that have been dispatched.
+         *
+         * @return the number of events that have been dispatched.
+         */
+        @Exported
+        public long getCount() {
+            return dispatchTime.getCount();
+        }
+
+        /**
+         * Returns the time from {@link SCMEvent#getTimestamp()} until the dispatch started. As the timestamp comes
+         * from the SCM this is subject to clock skew between the SCM and Jenkins.
+         *
+         * @return the time from the event timestamp until the dispatch started.
+         */
+        @Exported(inline = true)
+        @NonNull
+        public LatencyHistogram getOriginLag() {
+            return originLag;
+        }
+
+        /**
+         * Returns the time from the event being accepted for dispatch until the dispatch started (this includes any
+         * delay requested when the event was fired).
+         *
+         * @return the time from the event being accepted for dispatch until the dispatch started.
+         */
+        @Exported(inline = true)
+        @NonNull
+        public LatencyHistogram getQueueLag() {
+            return queueLag;
+        }
+
+        /**
+         * Returns the time from the dispatch starting until all the listeners have been notified.
+         *
+         * @return the time from the dispatch starting until all the listeners have been notified.
+         */
+        @Exported(inline = true)
+        @NonNull
+        public LatencyHistogram getDispatchTime() {
+            return dispatchTime;
+        }
+    }
+
+    /**
+     * The statistics for one combination of listener, event class and event type.
+     */
+    @ExportedBean
+    public static class ListenerStats {
+        /**
+         * The listener class name.
+         */
+        @NonNull
+        private final String listener;
+        /**
+         * The event class name.
+         */
+        @NonNull
+        private final String event;
+        /**
+         * The event type.
+         */
+        @NonNull
+        private final String type;
+        /**
+         * The number of times the listener propagated an exception.
+         */
+        private final AtomicLong errors = new AtomicLong();
+        /**
+         * The time taken by the listener to process events.
+         */
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        /**
+         * Constructor.
+         *
+         * @param listener the listener class name.
+         * @param event    the event class name.
+         * @param type     the event type.
+         */
+        private ListenerStats(@NonNull String listener, @NonNull String event, @NonNull SCMEvent.Type type) {
+            this.listener = listener;
+            this.event = event;
+            this.type = type.name();
+        }
+
+        /**
+         * Records an invocation.
+         *
+         * @param nanos how long the invocation took.
+         * @param error {@code true} if the invocation propagated an exception.
+         */
+        private void record(long nanos, boolean error) {
+            latency.record(nanos);
+            if (error) {
+                errors.incrementAndGet();
+            }
+        }
+
+        /**
+         * Returns the listener class name.
+         *
+         * @return the listener class name.
+         */
+        @Exported
+        @NonNull
+        public String getListener() {
+            return listener;
+        }
+
+        /**
+         * Returns the event class name.
+         *
+         * @return the event class name.
+         */
+        @Exported
+        @NonNull
+        public String getEvent() {
+            return event;
+        }
+
+        /**
+         * Returns the event type.
+         *
+         * @return the event type.
+         */
+        @Exported
+        @NonNull
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the number of times the listener has been invoked.
+         *
+         * @return the number of times the listener has been invoked.
+         */
+        @Exported
+        public long getInvocations() {
+            return latency.getCount();
+        }
+
+        /**
+         * Returns the number of times the listener propagated an exception.
+         *
+         * @return the number of times the listener propagated an exception.
+         */
+        @Exported
+        public long getErrors() {
+            return errors.get();
+        }
+
+        /**
+         * Returns the mean processing time in milliseconds.
+         *
+         * @return the mean processing time in milliseconds.
+         */
+        @Exported
+        public double getMeanMillis() {
+            return latency.getMeanMillis();
+        }
+
+        /**
+         * Returns the median processing time in milliseconds.
+         *
+         * @return the median processing time in milliseconds.
+         */
+        @Exported
+        public double getP50Millis() {
+            return latency.getP50Millis();
+        }
+
+        /**
+         * Returns the 95th percentile processing time in milliseconds.
+         *
+         * @return the 95th percentile processing time in milliseconds.
+         */
+        @Exported
+        public double getP95Millis() {
+            return latency.getP95Millis();
+        }
+
+        /**
+         * Returns the 99th percentile processing time in milliseconds.
+         *
+         * @return the 99th percentile processing time in milliseconds.
+         */
+        @Exported
+        public double getP99Millis() {
+            return latency.getP99Millis();
+        }
+
+        /**
+         * Returns the maximum processing time in milliseconds.
+         *
+         * @return the maximum processing time in milliseconds.
+         */
+        @Exported
+        public double getMaxMillis() {
+            return latency.getMaxMillis();
+        }
+    }
+}
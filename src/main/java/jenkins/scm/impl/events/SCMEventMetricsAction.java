@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Api;
+import hudson.model.RootAction;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jenkins.model.Jenkins;
+import jenkins.scm.impl.Messages;
+import jenkins.scm.impl.SCM2Notifier;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.StaplerProxy;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Exposes {@link SCMEventMetrics} to administrators as {@code JENKINS_URL/scm-events/api/json} and registers it with
+ * the platform MBean server as {@value #OBJECT_NAME}. Every URL below {@code JENKINS_URL/scm-events/} requires
+ * {@link Jenkins#ADMINISTER}.
+ *
+ * @since FIXME
+ */
+@Extension
+@ExportedBean
+@Restricted(NoExternalUse.class)
+public class SCMEventMetricsAction implements RootAction, StaplerProxy {
+
+    /**
+     * The JMX object name.
+     */
+    public static final String OBJECT_NAME = "jenkins.scm.api:type=SCMEventMetrics";
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SCMEventMetricsAction.class.getName());
+
+    /**
+     * Registers {@link SCMEventMetrics} with the platform MBean server.
+     */
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                // e.g. a second Jenkins instance in the same JVM
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(SCMEventMetrics.get(), name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register SCM event metrics with JMX", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getDisplayName() {
+        return Messages.SCMEventMetricsAction_DisplayName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getUrlName() {
+        return "scm-events";
+    }
+
+    /**
+     * Restricts this action and everything reachable from it to administrators.
+     *
+     * @return this action.
+     */
+    @Override
+    public Object getTarget() {
+        Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+        return this;
+    }
+
+    /**
+     * Returns the remote API, restricted to administrators by {@link #getTarget()}.
+     *
+     * @return the remote API.
+     */
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * Returns the statistics for each combination of listener, event class and event type.
+     *
+     * @return the statistics for each combination of listener, event class and event type.
+     */
+    @Exported(inline = true)
+    public List<SCMEventMetrics.ListenerStats> getListeners() {
+        return SCMEventMetrics.get().getListeners();
+    }
+
+    /**
+     * Returns the dispatch lag statistics for each combination of event class and event type.
+     *
+     * @return the dispatch lag statistics for each combination of event class and event type.
+     */
+    @Exported(inline = true)
+    public List<SCMEventMetrics.EventStats> getEvents() {
+        return SCMEventMetrics.get().getEvents();
+    }
+
+    /**
+     * Returns the number of events that have been accepted for dispatch but not yet started.
+     *
+     * @return the number of events that have been accepted for dispatch but not yet started.
+     */
+    @Exported
+    public int getQueued() {
+        return SCMEventMetrics.get().getQueued();
+    }
+
+    /**
+     * Returns the number of events currently being dispatched.
+     *
+     * @return the number of events currently being dispatched.
+     */
+    @Exported
+    public int getInFlight() {
+        return SCMEventMetrics.get().getInFlight();
+    }
+
+    /**
+     * Returns the total number of events accepted for dispatch.
+     *
+     * @return the total number of events accepted for dispatch.
+     */
+    @Exported
+    public long getEnqueued() {
+        return SCMEventMetrics.get().getEnqueued();
+    }
+
+    /**
+     * Returns the total number of events that have been dispatched.
+     *
+     * @return the total number of events that have been dispatched.
+     */
+    @Exported
+    public long getCompleted() {
+        return SCMEventMetrics.get().getCompleted();
+    }
+
+    /**
+     * Returns the total number of events that were accepted for dispatch but discarded before being dispatched.
+     *
+     * @return the total number of events that were accepted for dispatch but discarded before being dispatched.
+     */
+    @Exported
+    public long getDiscarded() {
+        return SCMEventMetrics.get().getDiscarded();
+    }
+
+    /**
+     * Returns the total number of events that were shed because the dispatch queue was full.
+     *
+     * @return the total number of events that were shed because the dispatch queue was full.
+     */
+    @Exported
+    public long getShed() {
+        return SCMEventMetrics.get().getShed();
+    }
+
+    /**
+     * Returns the progress of the {@link jenkins.scm.api.SCM2#afterSave(jenkins.triggers.SCMTriggerItem)} callbacks.
+     *
+     * @return the progress of the callbacks.
+     */
+    @Exported(inline = true)
+    public SCM2Notifier.Stats getAfterSave() {
+        return SCM2Notifier.getStats();
+    }
+}
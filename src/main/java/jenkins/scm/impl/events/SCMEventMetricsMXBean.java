@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import java.util.List;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * The JMX view of {@link SCMEventMetrics}.
+ *
+ * @since FIXME
+ */
+@Restricted(NoExternalUse.class)
+public interface SCMEventMetricsMXBean {
+
+    /**
+     * Returns the statistics for each combination of listener, event class and event type that has been seen.
+     *
+     * @return the statistics for each combination of listener, event class and event type that has been seen.
+     */
+    List<SCMEventMetrics.ListenerStats> getListeners();
+
+    /**
+     * Returns the dispatch lag statistics for each combination of event class and event type that has been seen.
+     *
+     * @return the dispatch lag statistics for each combination of event class and event type that has been seen.
+     */
+    List<SCMEventMetrics.EventStats> getEvents();
+
+    /**
+     * Returns the number of events that have been accepted for dispatch but not yet started.
+     *
+     * @return the number of events that have been accepted for dispatch but not yet started.
+     */
+    int getQueued();
+
+    /**
+     * Returns the number of events currently being dispatched.
+     *
+     * @return the number of events currently being dispatched.
+     */
+    int getInFlight();
+
+    /**
+     * Returns the total number of events accepted for dispatch.
+     *
+     * @return the total number of events accepted for dispatch.
+     */
+    long getEnqueued();
+
+    /**
+     * Returns the total number of events that have been dispatched.
+     *
+     * @return the total number of events that have been dispatched.
+     */
+    long getCompleted();
+
+    /**
+     * Returns the total number of events that were accepted for dispatch but discarded before being dispatched.
+     *
+     * @return the total number of events that were accepted for dispatch but discarded before being dispatched.
+     */
+    long getDiscarded();
+
+    /**
+     * Returns the total number of events that were shed because the dispatch queue was full. Shed events are also
+     * counted by {@link #getDiscarded()}.
+     *
+     * @return the total number of events that were shed because the dispatch queue was full.
+     */
+    long getShed();
+
+    /**
+     * Discards all the listener and event statistics collected so far, the queue depth counters are not affected.
+     */
+    void reset();
+}
@@ -0,0 +1,502 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import jenkins.scm.api.SCMNavigator;
+import jenkins.scm.api.SCMNavigatorOwner;
+import jenkins.scm.api.SCMNavigatorOwners;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceOwner;
+import jenkins.scm.api.SCMSourceOwners;
+import jenkins.scm.api.SCMUri;
+import net.jcip.annotations.GuardedBy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * An index of the {@link SCMSourceOwner} and {@link SCMNavigatorOwner} items keyed by
+ * {@link SCMSource#getEventSourceName()} and the {@link SCMUri#normalize(String)} form of
+ * {@link SCMSource#getEventServerUrl()} / {@link SCMNavigator#getEventServerUrl()}, so that routing an event to the
+ * owners it may concern does not have to walk every item in the instance.
+ * <p>
+ * The index is built lazily from the {@link SCMSourceOwners.JenkinsItemEnumerator} and
+ * {@link SCMNavigatorOwners.JenkinsItemEnumerator}, updated as owners are saved and rebuilt on the next lookup after
+ * items are created, copied, moved, deleted or reloaded. Rebuilding walks the items without holding the lock that
+ * lookups and saves contend on. Owners contributed by any other
+ * {@link SCMSourceOwners.Enumerator} / {@link SCMNavigatorOwners.Enumerator} are not indexed and are enumerated on
+ * every lookup, as are owners with a source or navigator that does not provide index keys. Set the
+ * {@code jenkins.scm.impl.events.SCMEventOwnerIndex.disabled} system property to {@code true} to have every lookup
+ * return all the owners.
+ *
+ * @since FIXME
+ */
+@Restricted(NoExternalUse.class)
+public final class SCMEventOwnerIndex {
+    /**
+     * Escape hatch to disable the index.
+     */
+    private static final boolean DISABLED = Boolean.getBoolean(SCMEventOwnerIndex.class.getName() + ".disabled");
+    /**
+     * The singleton instance.
+     */
+    private static final SCMEventOwnerIndex INSTANCE = new SCMEventOwnerIndex();
+    /**
+     * Lock guarding the index.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Serializes rebuilds so that concurrent lookups do not each walk every item.
+     */
+    private final Object buildLock = new Object();
+    /**
+     * The index or {@code null} if it has to be rebuilt.
+     */
+    @GuardedBy("lock")
+    @CheckForNull
+    private Index index;
+    /**
+     * Incremented each time the index is invalidated so that a rebuild started before the invalidation is discarded.
+     */
+    @GuardedBy("lock")
+    private long generation;
+    /**
+     * The owners saved since the index was invalidated, re-indexed when a rebuilt index is swapped in as the rebuild
+     * may have read them before they were saved.
+     */
+    @GuardedBy("lock")
+    private final Set<Item> dirty = new LinkedHashSet<Item>();
+
+    /**
+     * Returns the index.
+     *
+     * @return the index.
+     */
+    @NonNull
+    public static SCMEventOwnerIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the {@link SCMSourceOwner} instances that may own a {@link SCMSource} with the supplied name on the
+     * supplied server. The result is a superset of the owners concerned, callers must still check each source.
+     *
+     * @param sourceName the source name.
+     * @param serverUrl  the server URL or {@code null} to match any server.
+     * @return the candidate owners.
+     */
+    @NonNull
+    public Iterable<SCMSourceOwner> sourceOwners(@NonNull String sourceName, @CheckForNull String serverUrl) {
+        if (DISABLED) {
+            return SCMSourceOwners.all();
+        }
+        String url = SCMUri.normalize(serverUrl);
+        Set<SCMSourceOwner> result = new LinkedHashSet<SCMSourceOwner>();
+        lock.readLock().lock();
+        try {
+            while (index == null) {
+                lock.readLock().unlock();
+                try {
+                    rebuild();
+                } finally {
+                    lock.readLock().lock();
+                }
+            }
+            result.addAll(index.unindexedSources);
+            Map<SCMSourceOwner, Set<String>> owners = index.sourcesByName.get(sourceName);
+            if (owners != null) {
+                for (Map.Entry<SCMSourceOwner, Set<String>> entry : owners.entrySet()) {
+                    Set<String> urls = entry.getValue();
+                    if (url == null || urls.contains(null) || urls.contains(url)) {
+                        result.add(entry.getKey());
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (SCMSourceOwners.Enumerator e : ExtensionList.lookup(SCMSourceOwners.Enumerator.class)) {
+            if (!(e instanceof SCMSourceOwners.JenkinsItemEnumerator)) {
+                for (SCMSourceOwner owner : e) {
+                    result.add(owner);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link SCMNavigatorOwner} instances that may own a {@link SCMNavigator} for the supplied server.
+     * The result is a superset of the owners concerned, callers must still check each navigator.
+     *
+     * @param serverUrl the server URL or {@code null} to match any server.
+     * @return the candidate owners.
+     */
+    @NonNull
+    public Iterable<SCMNavigatorOwner> navigatorOwners(@CheckForNull String serverUrl) {
+        if (DISABLED) {
+            return SCMNavigatorOwners.all();
+        }
+        String url = SCMUri.normalize(serverUrl);
+        Set<SCMNavigatorOwner> result = new LinkedHashSet<SCMNavigatorOwner>();
+        lock.readLock().lock();
+        try {
+            while (index == null) {
+                lock.readLock().unlock();
+                try {
+                    rebuild();
+                } finally {
+                    lock.readLock().lock();
+                }
+            }
+            if (url == null) {
+                result.addAll(index.navigatorUrls.keySet());
+            } else {
+                result.addAll(index.unindexedNavigators);
+                Set<SCMNavigatorOwner> owners = index.navigatorsByUrl.get(url);
+                if (owners != null) {
+                    result.addAll(owners);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (SCMNavigatorOwners.Enumerator e : ExtensionList.lookup(SCMNavigatorOwners.Enumerator.class)) {
+            if (!(e instanceof SCMNavigatorOwners.JenkinsItemEnumerator)) {
+                for (SCMNavigatorOwner owner : e) {
+                    result.add(owner);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discards the index so that it is rebuilt on the next lookup.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            index = null;
+            generation++;
+            dirty.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-indexes an owner after it has been saved.
+     *
+     * @param owner the {@link SCMSourceOwner} and / or {@link SCMNavigatorOwner}.
+     */
+    public void update(@NonNull Item owner) {
+        lock.writeLock().lock();
+        try {
+            if (index == null) {
+                // a rebuild in progress may have read the owner before it was saved
+                dirty.add(owner);
+                return;
+            }
+            index.update(owner);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the index if it is not valid. The items are walked without holding {@link #lock} so that saves and
+     * invalidations are not blocked by the walk; the result is discarded if the index was invalidated meanwhile.
+     */
+    private void rebuild() {
+        synchronized (buildLock) {
+            long started;
+            lock.readLock().lock();
+            try {
+                if (index != null) {
+                    return;
+                }
+                started = generation;
+            } finally {
+                lock.readLock().unlock();
+            }
+            Index built = new Index();
+            for (SCMSourceOwners.Enumerator e : ExtensionList.lookup(SCMSourceOwners.Enumerator.class)) {
+                if (e instanceof SCMSourceOwners.JenkinsItemEnumerator) {
+                    for (SCMSourceOwner owner : e) {
+                        built.addSourceOwner(owner);
+                    }
+                }
+            }
+            for (SCMNavigatorOwners.Enumerator e : ExtensionList.lookup(SCMNavigatorOwners.Enumerator.class)) {
+                if (e instanceof SCMNavigatorOwners.JenkinsItemEnumerator) {
+                    for (SCMNavigatorOwner owner : e) {
+                        built.addNavigatorOwner(owner);
+                    }
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                if (index == null && generation == started) {
+                    for (Item owner : dirty) {
+                        built.update(owner);
+                    }
+                    dirty.clear();
+                    index = built;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * The index proper. Not thread safe, once published as {@link SCMEventOwnerIndex#index} it is only accessed
+     * holding {@link SCMEventOwnerIndex#lock}.
+     */
+    private static final class Index {
+        /**
+         * The source names indexed for each {@link SCMSourceOwner}, every indexed owner has an entry.
+         */
+        private final Map<SCMSourceOwner, Set<String>> sourceNames = new HashMap<SCMSourceOwner, Set<String>>();
+        /**
+         * The owners by source name and then the normalized server URLs of the sources with that name
+         * ({@code null} when the source did not provide a server URL, i.e. any server).
+         */
+        private final Map<String, Map<SCMSourceOwner, Set<String>>> sourcesByName =
+                new HashMap<String, Map<SCMSourceOwner, Set<String>>>();
+        /**
+         * The owners with at least one source that did not provide a source name.
+         */
+        private final Set<SCMSourceOwner> unindexedSources = new LinkedHashSet<SCMSourceOwner>();
+        /**
+         * The normalized server URLs for each {@link SCMNavigatorOwner}, every indexed owner has an entry.
+         */
+        private final Map<SCMNavigatorOwner, Set<String>> navigatorUrls =
+                new HashMap<SCMNavigatorOwner, Set<String>>();
+        /**
+         * The owners by normalized server URL.
+         */
+        private final Map<String, Set<SCMNavigatorOwner>> navigatorsByUrl =
+                new HashMap<String, Set<SCMNavigatorOwner>>();
+        /**
+         * The owners with at least one navigator that did not provide a server URL.
+         */
+        private final Set<SCMNavigatorOwner> unindexedNavigators = new LinkedHashSet<SCMNavigatorOwner>();
+
+        /**
+         * Re-indexes an owner.
+         *
+         * @param owner the {@link SCMSourceOwner} and / or {@link SCMNavigatorOwner}.
+         */
+        private void update(@NonNull Item owner) {
+            if (owner instanceof SCMSourceOwner) {
+                removeSourceOwner((SCMSourceOwner) owner);
+                addSourceOwner((SCMSourceOwner) owner);
+            }
+            if (owner instanceof SCMNavigatorOwner) {
+                removeNavigatorOwner((SCMNavigatorOwner) owner);
+                addNavigatorOwner((SCMNavigatorOwner) owner);
+            }
+        }
+
+        /**
+         * Adds a {@link SCMSourceOwner} to the index.
+         *
+         * @param owner the owner.
+         */
+        private void addSourceOwner(@NonNull SCMSourceOwner owner) {
+            Set<String> names = new HashSet<String>();
+            for (SCMSource source : owner.getSCMSources()) {
+                String name = source.getEventSourceName();
+                if (name == null) {
+                    unindexedSources.add(owner);
+                    continue;
+                }
+                names.add(name);
+                Map<SCMSourceOwner, Set<String>> owners = sourcesByName.get(name);
+                if (owners == null) {
+                    owners = new HashMap<SCMSourceOwner, Set<String>>();
+                    sourcesByName.put(name, owners);
+                }
+                Set<String> urls = owners.get(owner);
+                if (urls == null) {
+                    urls = new HashSet<String>();
+                    owners.put(owner, urls);
+                }
+                urls.add(SCMUri.normalize(source.getEventServerUrl()));
+            }
+            sourceNames.put(owner, names);
+        }
+
+        /**
+         * Removes a {@link SCMSourceOwner} from the index.
+         *
+         * @param owner the owner.
+         */
+        private void removeSourceOwner(@NonNull SCMSourceOwner owner) {
+            unindexedSources.remove(owner);
+            Set<String> names = sourceNames.remove(owner);
+            if (names == null) {
+                return;
+            }
+            for (String name : names) {
+                Map<SCMSourceOwner, Set<String>> owners = sourcesByName.get(name);
+                if (owners != null) {
+                    owners.remove(owner);
+                    if (owners.isEmpty()) {
+                        sourcesByName.remove(name);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds a {@link SCMNavigatorOwner} to the index.
+         *
+         * @param owner the owner.
+         */
+        private void addNavigatorOwner(@NonNull SCMNavigatorOwner owner) {
+            Set<String> urls = new HashSet<String>();
+            for (SCMNavigator navigator : owner.getSCMNavigators()) {
+                String url = SCMUri.normalize(navigator.getEventServerUrl());
+                if (url == null) {
+                    unindexedNavigators.add(owner);
+                    continue;
+                }
+                urls.add(url);
+                Set<SCMNavigatorOwner> owners = navigatorsByUrl.get(url);
+                if (owners == null) {
+                    owners = new LinkedHashSet<SCMNavigatorOwner>();
+                    navigatorsByUrl.put(url, owners);
+                }
+                owners.add(owner);
+            }
+            navigatorUrls.put(owner, urls);
+        }
+
+        /**
+         * Removes a {@link SCMNavigatorOwner} from the index.
+         *
+         * @param owner the owner.
+         */
+        private void removeNavigatorOwner(@NonNull SCMNavigatorOwner owner) {
+            unindexedNavigators.remove(owner);
+            Set<String> urls = navigatorUrls.remove(owner);
+            if (urls == null) {
+                return;
+            }
+            for (String url : urls) {
+                Set<SCMNavigatorOwner> owners = navigatorsByUrl.get(url);
+                if (owners != null) {
+                    owners.remove(owner);
+                    if (owners.isEmpty()) {
+                        navigatorsByUrl.remove(url);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates the index when the item tree changes shape.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class ItemListenerImpl extends ItemListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCreated(Item item) {
+            INSTANCE.invalidate();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCopied(Item src, Item item) {
+            INSTANCE.invalidate();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLoaded() {
+            INSTANCE.invalidate();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(Item item) {
+            INSTANCE.invalidate();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            INSTANCE.invalidate();
+        }
+    }
+
+    /**
+     * Re-indexes owners as they are saved.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class SaveableListenerImpl extends SaveableListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Item && (o instanceof SCMSourceOwner || o instanceof SCMNavigatorOwner)) {
+                INSTANCE.update((Item) o);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.trait;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compiled form of a space separated list of wildcard rules where {@code *} matches any sequence of characters.
+ * A name matches if it matches any of the rules. Rules without a wildcard are matched with a single hash lookup and
+ * rules with wildcards are matched by walking the pre-split literal segments of the rule, so matching a name does not
+ * allocate.
+ *
+ * @since FIXME
+ */
+final class WildcardMatcher {
+
+    /**
+     * {@code true} if one of the rules matches everything.
+     */
+    private final boolean any;
+
+    /**
+     * The rules that do not contain any wildcards.
+     */
+    @NonNull
+    private final Set<String> literals;
+
+    /**
+     * The rules that contain wildcards, each rule is the prefix, the non-empty literal segments between the
+     * wildcards and the suffix.
+     */
+    @NonNull
+    private final String[][] globs;
+
+    /**
+     * Constructor.
+     *
+     * @param any      {@code true} if one of the rules matches everything.
+     * @param literals the rules that do not contain any wildcards.
+     * @param globs    the rules that contain wildcards.
+     */
+    private WildcardMatcher(boolean any, @NonNull Set<String> literals, @NonNull String[][] globs) {
+        this.any = any;
+        this.literals = literals;
+        this.globs = globs;
+    }
+
+    /**
+     * Compiles a space separated list of wildcard rules.
+     *
+     * @param rules the space separated list of wildcard rules.
+     * @return the compiled matcher.
+     */
+    @NonNull
+    static WildcardMatcher compile(@NonNull String rules) {
+        boolean any = false;
+        Set<String> literals = new HashSet<String>();
+        List<String[]> globs = new ArrayList<String[]>();
+        for (String rule : rules.split(" ")) {
+            if (rule.indexOf('*') == -1) {
+                literals.add(rule);
+                continue;
+            }
+            List<String> segments = new ArrayList<String>();
+            int start = 0;
+            for (int star = rule.indexOf('*'); star != -1; star = rule.indexOf('*', start)) {
+                String segment = rule.substring(start, star);
+                if (start == 0 || !segment.isEmpty()) {
+                    segments.add(segment);
+                }
+                start = star + 1;
+            }
+            segments.add(rule.substring(start));
+            if (segments.size() == 2 && segments.get(0).isEmpty() && segments.get(1).isEmpty()) {
+                any = true;
+            } else {
+                globs.add(segments.toArray(new String[segments.size()]));
+            }
+        }
+        return new WildcardMatcher(
+                any,
+                literals.isEmpty() ? Collections.<String>emptySet() : literals,
+                globs.toArray(new String[globs.size()][])
+        );
+    }
+
+    /**
+     * Tests if the supplied name matches any of the rules.
+     *
+     * @param name the name.
+     * @return {@code true} if the name matches any of the rules.
+     */
+    boolean matches(@NonNull String name) {
+        if (any || literals.contains(name)) {
+            return true;
+        }
+        for (String[] glob : globs) {
+            if (matches(glob, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests if the supplied name matches a rule containing wildcards.
+     *
+     * @param glob the prefix, the literal segments between the wildcards and the suffix.
+     * @param name the name.
+     * @return {@code true} if the name matches the rule.
+     */
+    private static boolean matches(@NonNull String[] glob, @NonNull String name) {
+        String prefix = glob[0];
+        String suffix = glob[glob.length - 1];
+        int end = name.length() - suffix.length();
+        if (end < prefix.length() || !name.startsWith(prefix) || !name.endsWith(suffix)) {
+            return false;
+        }
+        // as the wildcards can match anything, matching each segment at its leftmost position is sufficient
+        int from = prefix.length();
+        for (int i = 1; i < glob.length - 1; i++) {
+            int index = name.indexOf(glob[i], from);
+            if (index == -1 || index + glob[i].length() > end) {
+                return false;
+            }
+            from = index + glob[i].length();
+        }
+        return true;
+    }
+
+    /**
+     * The compiled include and exclude rules of a wildcard filter trait. The traits keep their rules as strings and
+     * hold this in a transient field, compiling it when constructed and when deserialized.
+     */
+    static final class Filter {
+
+        /**
+         * The compiled include rules.
+         */
+        @NonNull
+        private final WildcardMatcher includes;
+
+        /**
+         * The compiled exclude rules.
+         */
+        @NonNull
+        private final WildcardMatcher excludes;
+
+        /**
+         * Constructor.
+         *
+         * @param includes the space separated list of include rules.
+         * @param excludes the space separated list of exclude rules.
+         */
+        Filter(@NonNull String includes, @NonNull String excludes) {
+            this.includes = compile(includes);
+            this.excludes = compile(excludes);
+        }
+
+        /**
+         * Tests if the supplied name is excluded, i.e. does not match any include rule or matches an exclude rule.
+         *
+         * @param name the name.
+         * @return {@code true} if the name is excluded.
+         */
+        boolean isExcluded(@NonNull String name) {
+            return !includes.matches(name) || excludes.matches(name);
+        }
+    }
+}
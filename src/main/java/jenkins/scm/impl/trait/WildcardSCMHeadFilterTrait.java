@@ -27,7 +27,6 @@ package jenkins.scm.impl.trait;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
-import java.util.regex.Pattern;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMSource;
 import jenkins.scm.api.trait.SCMHeadPrefilter;
@@ -58,6 +57,12 @@ public class WildcardSCMHeadFilterTrait extends SCMSourceTrait {
     @NonNull
     private final String excludes;
 
+    /**
+     * The compiled rules.
+     */
+    @NonNull
+    private transient WildcardMatcher.Filter filter;
+
     /**
      * Stapler constructor.
      *
@@ -68,6 +73,17 @@ public class WildcardSCMHeadFilterTrait extends SCMSourceTrait {
     public WildcardSCMHeadFilterTrait(@CheckForNull String includes, String excludes) {
         this.includes = StringUtils.defaultIfBlank(includes, "*");
         this.excludes = StringUtils.defaultIfBlank(excludes, "");
+        this.filter = new WildcardMatcher.Filter(this.includes, this.excludes);
+    }
+
+    /**
+     * Compiles the rules after deserialization.
+     *
+     * @return this trait.
+     */
+    private Object readResolve() {
+        filter = new WildcardMatcher.Filter(includes, excludes);
+        return this;
     }
 
     /**
@@ -93,40 +109,15 @@ public class WildcardSCMHeadFilterTrait extends SCMSourceTrait {
      */
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
+        final WildcardMatcher.Filter filter = this.filter;
         context.withPrefilter(new SCMHeadPrefilter() {
             @Override
             public boolean isExcluded(@NonNull SCMSource request, @NonNull SCMHead head) {
-                return !Pattern.matches(getPattern(getIncludes()), head.getName())
-                        || (Pattern.matches(getPattern(getExcludes()), head.getName()));
+                return filter.isExcluded(head.getName());
             }
         });
     }
 
-    /**
-     * Returns the pattern corresponding to the branches containing wildcards.
-     *
-     * @param branches the names of branches to create a pattern for
-     * @return pattern corresponding to the branches containing wildcards
-     */
-    private String getPattern(String branches) {
-        StringBuilder quotedBranches = new StringBuilder();
-        for (String wildcard : branches.split(" ")) {
-            StringBuilder quotedBranch = new StringBuilder();
-            for (String branch : wildcard.split("(?=[*])|(?<=[*])")) {
-                if (branch.equals("*")) {
-                    quotedBranch.append(".*");
-                } else if (!branch.isEmpty()) {
-                    quotedBranch.append(Pattern.quote(branch));
-                }
-            }
-            if (quotedBranches.length() > 0) {
-                quotedBranches.append("|");
-            }
-            quotedBranches.append(quotedBranch);
-        }
-        return quotedBranches.toString();
-    }
-
     /**
      * Our descriptor.
      */
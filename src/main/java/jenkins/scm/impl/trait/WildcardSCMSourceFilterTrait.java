@@ -26,7 +26,6 @@ package jenkins.scm.impl.trait;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
-import java.util.regex.Pattern;
 import jenkins.scm.api.SCMNavigator;
 import jenkins.scm.api.trait.SCMNavigatorContext;
 import jenkins.scm.api.trait.SCMNavigatorTrait;
@@ -56,6 +55,12 @@ public class WildcardSCMSourceFilterTrait extends SCMNavigatorTrait {
     @NonNull
     private final String excludes;
 
+    /**
+     * The compiled rules.
+     */
+    @NonNull
+    private transient WildcardMatcher.Filter filter;
+
     /**
      * Stapler constructor.
      *
@@ -66,6 +71,17 @@ public class WildcardSCMSourceFilterTrait extends SCMNavigatorTrait {
     public WildcardSCMSourceFilterTrait(String includes, String excludes) {
         this.includes = StringUtils.defaultIfBlank(includes, "*");
         this.excludes = StringUtils.defaultIfBlank(excludes, "");
+        this.filter = new WildcardMatcher.Filter(this.includes, this.excludes);
+    }
+
+    /**
+     * Compiles the rules after deserialization.
+     *
+     * @return this trait.
+     */
+    private Object readResolve() {
+        filter = new WildcardMatcher.Filter(includes, excludes);
+        return this;
     }
 
     /**
@@ -91,40 +107,15 @@ public class WildcardSCMSourceFilterTrait extends SCMNavigatorTrait {
      */
     @Override
     protected void decorateContext(SCMNavigatorContext<?, ?> context) {
+        final WildcardMatcher.Filter filter = this.filter;
         context.withPrefilter(new SCMSourcePrefilter() {
             @Override
             public boolean isExcluded(@NonNull SCMNavigator source, @NonNull String projectName) {
-                return !Pattern.matches(getPattern(getIncludes()), projectName)
-                        || (Pattern.matches(getPattern(getExcludes()), projectName));
+                return filter.isExcluded(projectName);
             }
         });
     }
 
-    /**
-     * Returns the pattern corresponding to the project name containing wildcards.
-     *
-     * @param branches the names of projects to create a pattern for
-     * @return pattern corresponding to the projects containing wildcards
-     */
-    private String getPattern(String branches) {
-        StringBuilder quotedBranches = new StringBuilder();
-        for (String wildcard : branches.split(" ")) {
-            StringBuilder quotedBranch = new StringBuilder();
-            for (String branch : wildcard.split("(?=[*])|(?<=[*])")) {
-                if (branch.equals("*")) {
-                    quotedBranch.append(".*");
-                } else if (!branch.isEmpty()) {
-                    quotedBranch.append(Pattern.quote(branch));
-                }
-            }
-            if (quotedBranches.length() > 0) {
-                quotedBranches.append("|");
-            }
-            quotedBranches.append(quotedBranch);
-        }
-        return quotedBranches.toString();
-    }
-
     /**
      * Our descriptor.
      */
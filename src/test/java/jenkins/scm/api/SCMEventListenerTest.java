@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMHeadEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class SCMEventListenerTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void parallelListenerDoesNotBlockSerialListeners() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            long watermark = SCMEvents.getWatermark();
+            SCMHeadEvent.fireNow(new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev"));
+            // the serial listener must see the event while the parallel listener is still blocked
+            assertThat(SerialListener.seen.await(30, TimeUnit.SECONDS), is(true));
+            assertThat(SlowParallelListener.finished.getCount(), is(1L));
+            SlowParallelListener.release.countDown();
+            assertThat(SCMEvents.awaitAll(watermark, 30, TimeUnit.SECONDS), is(true));
+            assertThat(SlowParallelListener.finished.getCount(), is(0L));
+        } finally {
+            SlowParallelListener.release.countDown();
+            c.close();
+        }
+    }
+
+    @TestExtension("parallelListenerDoesNotBlockSerialListeners")
+    public static class SlowParallelListener extends SCMEventListener {
+        static final CountDownLatch release = new CountDownLatch(1);
+        static final CountDownLatch finished = new CountDownLatch(1);
+
+        @Override
+        public boolean isParallelSafe() {
+            return true;
+        }
+
+        @Override
+        public void onSCMHeadEvent(SCMHeadEvent<?> event) {
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.countDown();
+        }
+    }
+
+    @TestExtension("parallelListenerDoesNotBlockSerialListeners")
+    public static class SerialListener extends SCMEventListener {
+        static final CountDownLatch seen = new CountDownLatch(1);
+
+        @Override
+        public void onSCMHeadEvent(SCMHeadEvent<?> event) {
+            seen.countDown();
+        }
+    }
+
+    @Test
+    public void currentEventVisibleToListeners() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            long watermark = SCMEvents.getWatermark();
+            MockSCMHeadEvent event = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev");
+            SCMHeadEvent.fireNow(event);
+            assertThat(SCMEvents.awaitAll(watermark, 30, TimeUnit.SECONDS), is(true));
+            assertThat(CurrentListener.current, sameInstance((SCMEvent<?>) event));
+            assertThat(SCMEvent.current(), nullValue());
+        } finally {
+            c.close();
+        }
+    }
+
+    @TestExtension("currentEventVisibleToListeners")
+    public static class CurrentListener extends SCMEventListener {
+        static volatile SCMEvent<?> current;
+
+        @Override
+        public void onSCMHeadEvent(SCMHeadEvent<?> event) {
+            current = SCMEvent.current();
+        }
+    }
+
+    @Test
+    public void batchedListenerReceivesEventsTogether() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            MockSCMHeadEvent first = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev1");
+            MockSCMHeadEvent second = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "feature", "rev2");
+            SCMHeadEvent.fireNow(first);
+            SCMHeadEvent.fireNow(second);
+            assertThat(BatchedListener.delivered.await(30, TimeUnit.SECONDS), is(true));
+            assertThat(BatchedListener.batches.size(), is(1));
+            assertThat(BatchedListener.batches.get(0), contains((SCMHeadEvent<?>) first, second));
+        } finally {
+            c.close();
+        }
+    }
+
+    @TestExtension("batchedListenerReceivesEventsTogether")
+    public static class BatchedListener extends SCMEventListener {
+        static final CountDownLatch delivered = new CountDownLatch(1);
+        static final List<List<SCMHeadEvent<?>>> batches =
+                Collections.synchronizedList(new ArrayList<List<SCMHeadEvent<?>>>());
+
+        @Override
+        public long getBatchWindow(TimeUnit unit) {
+            return unit.convert(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void onSCMHeadEvents(List<SCMHeadEvent<?>> events) {
+            batches.add(new ArrayList<SCMHeadEvent<?>>(events));
+            delivered.countDown();
+        }
+    }
+}
@@ -50,16 +50,18 @@ public class SCMEvents {
      */
     public static void awaitOne(long watermark)
             throws InterruptedException {
+        SCMEvent.Dispatcher.waiters.incrementAndGet();
         SCMEvent.Dispatcher.lock.lock();
         try {
             while (true) {
-                if (SCMEvent.Dispatcher.finishedId > watermark) {
+                if (SCMEvent.Dispatcher.finishedId.get() > watermark) {
                     return;
                 }
                 SCMEvent.Dispatcher.finished.await();
             }
         } finally {
             SCMEvent.Dispatcher.lock.unlock();
+            SCMEvent.Dispatcher.waiters.decrementAndGet();
         }
     }
 
@@ -76,10 +78,11 @@ public class SCMEvents {
     public static boolean awaitOne(long watermark, long maxWait, TimeUnit unit)
             throws InterruptedException {
         long nanos = unit.toNanos(maxWait);
+        SCMEvent.Dispatcher.waiters.incrementAndGet();
         SCMEvent.Dispatcher.lock.lock();
         try {
             while (nanos > 0L) {
-                if (SCMEvent.Dispatcher.finishedId > watermark) {
+                if (SCMEvent.Dispatcher.finishedId.get() > watermark) {
                     return true;
                 }
                 nanos = SCMEvent.Dispatcher.finished.awaitNanos(nanos);
@@ -87,6 +90,7 @@ public class SCMEvents {
             return false;
         } finally {
             SCMEvent.Dispatcher.lock.unlock();
+            SCMEvent.Dispatcher.waiters.decrementAndGet();
         }
     }
 
@@ -98,17 +102,19 @@ public class SCMEvents {
      * @throws InterruptedException if interrupted.
      */
     public static void awaitAll(long watermark) throws InterruptedException {
+        SCMEvent.Dispatcher.waiters.incrementAndGet();
         SCMEvent.Dispatcher.lock.lock();
         try {
             while (true) {
-                if (SCMEvent.Dispatcher.finishedId == Math.max(watermark, Math.max(
-                        SCMEvent.Dispatcher.startedId, SCMEvent.Dispatcher.lastId.get()))) {
+                if (SCMEvent.Dispatcher.finishedId.get() == Math.max(watermark, Math.max(
+                        SCMEvent.Dispatcher.startedId.get(), SCMEvent.Dispatcher.lastId.get()))) {
                     return;
                 }
                 SCMEvent.Dispatcher.finished.await();
             }
         } finally {
             SCMEvent.Dispatcher.lock.unlock();
+            SCMEvent.Dispatcher.waiters.decrementAndGet();
         }
     }
 
@@ -126,11 +132,12 @@ public class SCMEvents {
     public static boolean awaitAll(long watermark, long maxWait, TimeUnit unit)
             throws InterruptedException {
         long nanos = unit.toNanos(maxWait);
+        SCMEvent.Dispatcher.waiters.incrementAndGet();
         SCMEvent.Dispatcher.lock.lock();
         try {
             while (nanos > 0L) {
-                if (SCMEvent.Dispatcher.finishedId == Math.max(watermark, Math.max(
-                        SCMEvent.Dispatcher.startedId, SCMEvent.Dispatcher.lastId.get()))) {
+                if (SCMEvent.Dispatcher.finishedId.get() == Math.max(watermark, Math.max(
+                        SCMEvent.Dispatcher.startedId.get(), SCMEvent.Dispatcher.lastId.get()))) {
                     return true;
                 }
                 nanos = SCMEvent.Dispatcher.finished.awaitNanos(nanos);
@@ -138,6 +145,7 @@ public class SCMEvents {
             return false;
         } finally {
             SCMEvent.Dispatcher.lock.unlock();
+            SCMEvent.Dispatcher.waiters.decrementAndGet();
         }
     }
 
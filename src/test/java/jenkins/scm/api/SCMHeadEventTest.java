@@ -0,0 +1,310 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.api;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.scm.SCM;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMHead;
+import jenkins.scm.impl.mock.MockSCMHeadEvent;
+import jenkins.scm.impl.mock.MockSCMRevision;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.mockito.Mockito;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SCMHeadEventTest {
+
+    @ClassRule
+    public static JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void redeliveryIsSuperseded() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            MockSCMHeadEvent older = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev1");
+            MockSCMHeadEvent newer = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev2");
+            assertThat(older.isSupersededBy(newer), is(true));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void differentHeadIsNotSuperseded() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            MockSCMHeadEvent master = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev1");
+            MockSCMHeadEvent feature = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "feature", "rev2");
+            assertThat(master.isSupersededBy(feature), is(false));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void differentSourceIsNotSuperseded() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            MockSCMHeadEvent foo = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev1");
+            MockSCMHeadEvent bar = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "bar", "master", "rev1");
+            assertThat(foo.isSupersededBy(bar), is(false));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void differentTypeIsNotSuperseded() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            MockSCMHeadEvent created = new MockSCMHeadEvent("test", SCMEvent.Type.CREATED, c, "foo", "master", "rev1");
+            MockSCMHeadEvent removed = new MockSCMHeadEvent("test", SCMEvent.Type.REMOVED, c, "foo", "master", null);
+            assertThat(created.isSupersededBy(removed), is(false));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void supersededEventIsCoalescedWithinWindow() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        long window = SCMHeadEvent.COALESCE_WINDOW_MILLIS;
+        SCMHeadEvent.COALESCE_WINDOW_MILLIS = 1000L;
+        RecordingListener.start();
+        try {
+            MockSCMHeadEvent older = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev1");
+            MockSCMHeadEvent newer = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev2");
+            long watermark = SCMEvents.getWatermark();
+            SCMHeadEvent.fireNow(older);
+            SCMHeadEvent.fireNow(newer);
+            assertThat(SCMEvents.awaitAll(watermark, 30, TimeUnit.SECONDS), is(true));
+            assertThat(RecordingListener.stop(), contains((SCMHeadEvent<?>) newer));
+        } finally {
+            SCMHeadEvent.COALESCE_WINDOW_MILLIS = window;
+            RecordingListener.stop();
+            c.close();
+        }
+    }
+
+    @Test
+    public void eventsForDifferentSourcesAreNotCoalesced() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        long window = SCMHeadEvent.COALESCE_WINDOW_MILLIS;
+        SCMHeadEvent.COALESCE_WINDOW_MILLIS = 1000L;
+        RecordingListener.start();
+        try {
+            MockSCMHeadEvent foo = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev1");
+            MockSCMHeadEvent bar = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "bar", "master", "rev1");
+            long watermark = SCMEvents.getWatermark();
+            SCMHeadEvent.fireNow(foo);
+            SCMHeadEvent.fireNow(bar);
+            assertThat(SCMEvents.awaitAll(watermark, 30, TimeUnit.SECONDS), is(true));
+            assertThat(RecordingListener.stop(), containsInAnyOrder((SCMHeadEvent<?>) foo, bar));
+        } finally {
+            SCMHeadEvent.COALESCE_WINDOW_MILLIS = window;
+            RecordingListener.stop();
+            c.close();
+        }
+    }
+
+    @Test
+    public void pushesToSameHeadAreSuperseded() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        OwnerEnumerator.add(c, "foo");
+        try {
+            PushEvent older = new PushEvent(c, "foo", "master", "rev1");
+            PushEvent newer = new PushEvent(c, "foo", "master", "rev2");
+            assertThat(older.isSupersededBy(newer), is(true));
+        } finally {
+            OwnerEnumerator.clear();
+            c.close();
+        }
+    }
+
+    @Test
+    public void pushesToDifferentHeadsAreNotSuperseded() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        OwnerEnumerator.add(c, "foo");
+        try {
+            PushEvent master = new PushEvent(c, "foo", "master", "rev1");
+            PushEvent feature = new PushEvent(c, "foo", "feature", "rev2");
+            assertThat(master.isSupersededBy(feature), is(false));
+        } finally {
+            OwnerEnumerator.clear();
+            c.close();
+        }
+    }
+
+    @Test
+    public void pushesWithoutMatchingSourceAreNotSuperseded() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        OwnerEnumerator.add(c, "bar");
+        try {
+            PushEvent older = new PushEvent(c, "foo", "master", "rev1");
+            PushEvent newer = new PushEvent(c, "foo", "master", "rev2");
+            assertThat(older.isSupersededBy(newer), is(false));
+        } finally {
+            OwnerEnumerator.clear();
+            c.close();
+        }
+    }
+
+    @Test
+    public void pushesToSameHeadAreCoalescedWithinWindow() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        OwnerEnumerator.add(c, "foo");
+        long window = SCMHeadEvent.COALESCE_WINDOW_MILLIS;
+        SCMHeadEvent.COALESCE_WINDOW_MILLIS = 1000L;
+        RecordingListener.start();
+        try {
+            PushEvent older = new PushEvent(c, "foo", "master", "rev1");
+            PushEvent newer = new PushEvent(c, "foo", "master", "rev2");
+            long watermark = SCMEvents.getWatermark();
+            SCMHeadEvent.fireNow(older);
+            SCMHeadEvent.fireNow(newer);
+            assertThat(SCMEvents.awaitAll(watermark, 30, TimeUnit.SECONDS), is(true));
+            assertThat(RecordingListener.stop(), contains((SCMHeadEvent<?>) newer));
+        } finally {
+            SCMHeadEvent.COALESCE_WINDOW_MILLIS = window;
+            RecordingListener.stop();
+            OwnerEnumerator.clear();
+            c.close();
+        }
+    }
+
+    /**
+     * Records the events it receives while enabled by a test.
+     */
+    @TestExtension
+    public static class RecordingListener extends SCMEventListener {
+        private static volatile boolean enabled;
+        private static final List<SCMHeadEvent<?>> events =
+                Collections.synchronizedList(new ArrayList<SCMHeadEvent<?>>());
+
+        static void start() {
+            events.clear();
+            enabled = true;
+        }
+
+        static List<SCMHeadEvent<?>> stop() {
+            enabled = false;
+            synchronized (events) {
+                return new ArrayList<SCMHeadEvent<?>>(events);
+            }
+        }
+
+        @Override
+        public void onSCMHeadEvent(SCMHeadEvent<?> event) {
+            if (enabled) {
+                events.add(event);
+            }
+        }
+    }
+
+    /**
+     * A push of a revision to a head of a {@link MockSCMSource}, the payload is the revision so that two pushes to
+     * the same head are not re-deliveries of each other.
+     */
+    private static class PushEvent extends SCMHeadEvent<String> {
+        private final MockSCMController controller;
+        private final String repository;
+        private final String head;
+
+        PushEvent(MockSCMController controller, String repository, String head, String revision) {
+            super(Type.UPDATED, revision, "test");
+            this.controller = controller;
+            this.repository = repository;
+            this.head = head;
+        }
+
+        @Override
+        public boolean isMatch(@NonNull SCMNavigator navigator) {
+            return false;
+        }
+
+        @NonNull
+        @Override
+        public String getSourceName() {
+            return repository;
+        }
+
+        @NonNull
+        @Override
+        public Map<SCMHead, SCMRevision> heads(@NonNull SCMSource source) {
+            if (!(source instanceof MockSCMSource)
+                    || !controller.getId().equals(((MockSCMSource) source).getControllerId())
+                    || !repository.equals(((MockSCMSource) source).getRepository())) {
+                return Collections.emptyMap();
+            }
+            MockSCMHead key = new MockSCMHead(head);
+            return Collections.<SCMHead, SCMRevision>singletonMap(key, new MockSCMRevision(key, getPayload()));
+        }
+
+        @Override
+        public boolean isMatch(@NonNull SCM scm) {
+            return false;
+        }
+    }
+
+    /**
+     * Supplies owners of {@link MockSCMSource} instances added by a test.
+     */
+    @TestExtension
+    public static class OwnerEnumerator extends SCMSourceOwners.Enumerator {
+        private static final List<SCMSourceOwner> owners = new CopyOnWriteArrayList<SCMSourceOwner>();
+
+        static void add(MockSCMController controller, String repository) {
+            SCMSourceOwner owner = Mockito.mock(SCMSourceOwner.class);
+            Mockito.when(owner.getSCMSources())
+                    .thenReturn(Collections.<SCMSource>singletonList(new MockSCMSource(controller, repository)));
+            owners.add(owner);
+        }
+
+        static void clear() {
+            owners.clear();
+        }
+
+        @Override
+        public Iterator<SCMSourceOwner> iterator() {
+            return owners.iterator();
+        }
+    }
+}
@@ -26,6 +26,7 @@
 package jenkins.scm.api;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
@@ -34,6 +35,7 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
@@ -151,4 +153,223 @@ public class SCMHeadObserverTest {
         assertThat(instance.result(), is(revision));
     }
 
+    @Test
+    public void synchronize() throws Exception {
+        SCMHeadObserver.Collector collector = SCMHeadObserver.collect();
+        assertThat("Plain observers are not thread-safe", collector.isThreadSafe(), is(false));
+        final SCMHeadObserver.Synchronized<SCMHeadObserver.Collector> instance = SCMHeadObserver.synchronize(collector);
+        assertThat(instance.isThreadSafe(), is(true));
+        assertThat(instance.unwrap(), is(collector));
+        final SCMRevision revision = mock(SCMRevision.class);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i * 250;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 250; j++) {
+                            instance.observe(new SCMHead("head-" + (offset + j)), revision);
+                        }
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(collector.result().size(), is(1000));
+    }
+
+    @Test
+    public void collectConcurrently() throws Exception {
+        final SCMHeadObserver.ConcurrentCollector instance = SCMHeadObserver.collectConcurrently();
+        assertThat(instance.isThreadSafe(), is(true));
+        final SCMRevision revision = mock(SCMRevision.class);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i * 250;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 250; j++) {
+                        instance.observe(new SCMHead("head-" + (offset + j)), revision);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(instance.result().size(), is(1000));
+        assertThat(instance.result().keySet().iterator().next().getName(), is("head-0"));
+    }
+
+    @Test
+    public void firstConcurrently() throws Exception {
+        SCMHead head1 = new SCMHead("bar");
+        SCMRevision revision1 = mock(SCMRevision.class);
+        SCMHead head2 = new SCMHead("foo");
+        SCMRevision revision2 = mock(SCMRevision.class);
+        SCMHeadObserver.Collector collector = SCMHeadObserver.collect();
+        SCMHeadObserver.ConcurrentOneFinished instance =
+                SCMHeadObserver.firstConcurrently(collector, SCMHeadObserver.select(head1));
+        assertThat(instance.isThreadSafe(), is(true));
+        assertThat(instance.getIncludes(), nullValue());
+        assertThat(instance.isObserving(), is(true));
+        instance.observe(head1, revision1);
+        assertThat(instance.isObserving(), is(false));
+        assertThat(collector.result(), hasEntry(head1, revision1));
+        assertThat(instance.isObserving(), is(false));
+        instance.observe(head2, revision2);
+        assertThat(collector.result().size(), is(1));
+    }
+
+    @Test
+    public void allOfConcurrently() throws Exception {
+        SCMHead head1 = new SCMHead("bar");
+        SCMRevision revision1 = mock(SCMRevision.class);
+        SCMHead head2 = new SCMHead("foo");
+        SCMRevision revision2 = mock(SCMRevision.class);
+        SCMHeadObserver.ConcurrentAllFinished instance =
+                SCMHeadObserver.allOfConcurrently(SCMHeadObserver.select(head1), SCMHeadObserver.select(head2));
+        assertThat(instance.isThreadSafe(), is(true));
+        assertThat(instance.getIncludes(), containsInAnyOrder(head1, head2));
+        instance.observe(head1, revision1);
+        assertThat(instance.isObserving(), is(true));
+        instance.observe(head2, revision2);
+        assertThat(instance.isObserving(), is(false));
+    }
+
+    @Test
+    public void filterConcurrently() throws Exception {
+        SCMHead head1 = new SCMHead("bar");
+        SCMRevision revision1 = mock(SCMRevision.class);
+        SCMHead head2 = new SCMHead("foo");
+        SCMRevision revision2 = mock(SCMRevision.class);
+        SCMHeadObserver.Collector collector = SCMHeadObserver.collect();
+        SCMHeadObserver.ConcurrentFilter<SCMHeadObserver.Collector> instance =
+                SCMHeadObserver.filterConcurrently(collector, head1);
+        assertThat(instance.isThreadSafe(), is(true));
+        assertThat(instance.getIncludes(), contains(head1));
+        assertThat(instance.isObserving(), is(true));
+        instance.observe(head2, revision2);
+        assertThat(instance.isObserving(), is(true));
+        instance.observe(head1, revision1);
+        assertThat(instance.isObserving(), is(false));
+        assertThat(collector.result(), allOf(hasEntry(head1, revision1), not(hasKey(head2))));
+    }
+
+    @Test
+    public void stream() throws Exception {
+        final SCMHeadObserver.Streaming instance = SCMHeadObserver.stream(2);
+        assertThat(instance.isThreadSafe(), is(true));
+        final SCMRevision revision = mock(SCMRevision.class);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 100 && instance.isObserving(); i++) {
+                        instance.observe(new SCMHead("head-" + i), revision);
+                    }
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                } finally {
+                    instance.close();
+                }
+            }
+        };
+        producer.start();
+        int count = 0;
+        for (Map.Entry<SCMHead, SCMRevision> entry = instance.take(); entry != null; entry = instance.take()) {
+            assertThat(entry.getKey().getName(), is("head-" + count));
+            count++;
+        }
+        producer.join();
+        assertThat(count, is(100));
+        assertThat(instance.isDrained(), is(true));
+        assertThat(instance.isObserving(), is(false));
+    }
+
+    @Test
+    public void streamCancel() throws Exception {
+        final SCMHeadObserver.Streaming instance = SCMHeadObserver.stream(1);
+        final SCMRevision revision = mock(SCMRevision.class);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 100 && instance.isObserving(); i++) {
+                        instance.observe(new SCMHead("head-" + i), revision);
+                    }
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                } finally {
+                    instance.close();
+                }
+            }
+        };
+        producer.start();
+        assertThat(instance.take().getKey().getName(), is("head-0"));
+        instance.cancel();
+        producer.join(10000L);
+        assertThat(producer.isAlive(), is(false));
+        assertThat(instance.isCancelled(), is(true));
+        assertThat(instance.take(), nullValue());
+    }
+
+    @Test
+    public void streamClosedWhileProducerBlocked() throws Exception {
+        final SCMHeadObserver.Streaming instance = SCMHeadObserver.stream(1);
+        final SCMRevision revision = mock(SCMRevision.class);
+        instance.observe(new SCMHead("head-0"), revision);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    instance.observe(new SCMHead("head-1"), revision);
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        };
+        producer.start();
+        long timeout = System.currentTimeMillis() + 10000L;
+        while (producer.getState() != Thread.State.WAITING && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10L);
+        }
+        assertThat(producer.getState(), is(Thread.State.WAITING));
+        instance.close();
+        producer.join(10000L);
+        assertThat(producer.isAlive(), is(false));
+        assertThat(failure.get(), instanceOf(IllegalStateException.class));
+        assertThat(instance.take().getKey().getName(), is("head-0"));
+        assertThat(instance.take(), nullValue());
+        assertThat(instance.isDrained(), is(true));
+    }
+
+    @Test
+    public void includedNames() throws Exception {
+        SCMHead head1 = new SCMHead("bar");
+        SCMHead head2 = new SCMHead("foo");
+        assertThat(SCMHeadObserver.collect().getIncludedNames(), nullValue());
+        assertThat(SCMHeadObserver.select(head1).getIncludedNames(), contains("bar"));
+        assertThat(SCMHeadObserver.named("foo").getIncludedNames(), contains("foo"));
+        assertThat(SCMHeadObserver.named("foo").getIncludes(), nullValue());
+        assertThat(SCMHeadObserver.allOf(SCMHeadObserver.select(head1), SCMHeadObserver.named("foo"))
+                .getIncludedNames(), containsInAnyOrder("bar", "foo"));
+        assertThat(SCMHeadObserver.allOf(SCMHeadObserver.collect(), SCMHeadObserver.named("foo"))
+                .getIncludedNames(), nullValue());
+        assertThat(SCMHeadObserver.filter(SCMHeadObserver.collect(), head1, head2).getIncludedNames(),
+                containsInAnyOrder("bar", "foo"));
+        assertThat(SCMHeadObserver.synchronize(SCMHeadObserver.named("foo")).getIncludedNames(), contains("foo"));
+        assertThat(SCMHeadObserver.firstConcurrently(SCMHeadObserver.named("foo"), SCMHeadObserver.select(head2))
+                .getIncludedNames(), contains("foo"));
+    }
+
 }
@@ -0,0 +1,293 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.api;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMHead;
+import jenkins.scm.impl.mock.MockSCMRevision;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class SCMSourceTest {
+    @ClassRule
+    public static JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void given_sourceWithoutIncrementalSupport_when_fetchingChanges_then_fullRetrieve() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            c.createBranch("foo", "alt");
+            MockSCMSource src = new MockSCMSource(c, "foo", new MockSCMDiscoverBranches());
+            SCMHeadObserver.Collector observer = SCMHeadObserver.collect();
+            SCMHeadChanges changes = src.fetchChanges(null, observer, "some-checkpoint", null);
+            assertThat(changes.isFull(), is(true));
+            assertThat(changes.getRemoved().isEmpty(), is(true));
+            assertThat(changes.getCheckpoint(), nullValue());
+            Map<SCMHead, SCMRevision> result = observer.result();
+            assertThat(result.size(), is(2));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void given_sourceWithIncrementalSupport_when_fetchingChanges_then_onlyChangesObserved() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            c.createBranch("foo", "alt");
+            c.createBranch("foo", "gone");
+            IncrementalSource src = new IncrementalSource(c, "foo");
+            SCMHeadObserver.Collector observer = SCMHeadObserver.collect();
+            SCMHeadChanges changes = src.fetchChanges(null, observer, null, null);
+            assertThat(changes.isFull(), is(true));
+            assertThat(changes.getCheckpoint(), notNullValue());
+            assertThat(observer.result().size(), is(3));
+            assertThat(src.retrieveChangesCalls, is(0));
+
+            c.addFile("foo", "master", "update", "file", new byte[]{1});
+            c.createBranch("foo", "new");
+            c.deleteBranch("foo", "gone");
+            observer = SCMHeadObserver.collect();
+            SCMHeadChanges next = src.fetchChanges(null, observer, changes.getCheckpoint(), null);
+            assertThat(next.isFull(), is(false));
+            assertThat(src.retrieveChangesCalls, is(1));
+            assertThat(observer.result().keySet(),
+                    containsInAnyOrder((SCMHead) new MockSCMHead("master"), new MockSCMHead("new")));
+            assertThat(next.getRemoved(), contains((SCMHead) new MockSCMHead("gone")));
+            assertThat(next.getCheckpoint(), notNullValue());
+            assertThat(next.getCheckpoint(), not(is(changes.getCheckpoint())));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void given_unusableCheckpoint_when_fetchingChanges_then_fullRetrieve() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            c.createBranch("foo", "alt");
+            IncrementalSource src = new IncrementalSource(c, "foo");
+            SCMHeadObserver.Collector observer = SCMHeadObserver.collect();
+            SCMHeadChanges changes = src.fetchChanges(null, observer, IncrementalSource.EXPIRED, null);
+            assertThat(src.retrieveChangesCalls, is(1));
+            assertThat(changes.isFull(), is(true));
+            assertThat(changes.getRemoved().isEmpty(), is(true));
+            assertThat(changes.getCheckpoint(), notNullValue());
+            assertThat(observer.result().size(), is(2));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void given_parallelism_when_fetching_then_hintVisibleAndObserverSynchronized() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            c.createBranch("foo", "alt");
+            ProbingSource src = new ProbingSource(c, "foo", false);
+            SCMHeadObserver.Collector observer = SCMHeadObserver.collect();
+            assertThat(observer.isThreadSafe(), is(false));
+            assertThat(src.fetch(null, observer, null, null, 4), sameInstance(observer));
+            assertThat(src.parallelism, contains(4));
+            assertThat(src.observers.get(0), instanceOf(SCMHeadObserver.Synchronized.class));
+            assertThat(src.observers.get(0).isThreadSafe(), is(true));
+            assertThat(observer.result().size(), is(2));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void given_noParallelism_when_fetching_then_observerNotWrapped() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            ProbingSource src = new ProbingSource(c, "foo", false);
+            SCMHeadObserver.Collector observer = SCMHeadObserver.collect();
+            src.fetch(null, observer, null, null, 1);
+            src.fetch(null, observer, null, null);
+            assertThat(src.parallelism, contains(1, 1));
+            assertThat(src.observers.get(0), sameInstance((SCMHeadObserver) observer));
+            SCMHeadObserver.Synchronized<SCMHeadObserver.Collector> safe = SCMHeadObserver.synchronize(observer);
+            src.fetch(null, safe, null, null, 4);
+            // already thread-safe so passed through as is
+            assertThat(src.observers.get(2), sameInstance((SCMHeadObserver) safe));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void given_parallelism_when_nestedFetch_then_nestedFetchSeesNoParallelism() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            ProbingSource src = new ProbingSource(c, "foo", true);
+            src.fetch(null, SCMHeadObserver.collect(), null, null, 4);
+            // outer fetch, nested fetch, outer fetch after the nested fetch returned
+            assertThat(src.parallelism, contains(4, 1, 4));
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * A {@link MockSCMSource} that records the parallelism hint and observer of each retrieval.
+     */
+    private static class ProbingSource extends MockSCMSource {
+
+        private final List<Integer> parallelism = new ArrayList<Integer>();
+
+        private final List<SCMHeadObserver> observers = new ArrayList<SCMHeadObserver>();
+
+        private boolean nest;
+
+        private ProbingSource(MockSCMController controller, String repository, boolean nest) {
+            super(controller, repository, new MockSCMDiscoverBranches());
+            this.nest = nest;
+        }
+
+        @Override
+        protected void retrieve(@CheckForNull SCMSourceCriteria criteria, @NonNull SCMHeadObserver observer,
+                                @CheckForNull SCMHeadEvent<?> event, @NonNull TaskListener listener)
+                throws IOException, InterruptedException {
+            parallelism.add(getRetrieveParallelism());
+            observers.add(observer);
+            if (nest) {
+                nest = false;
+                fetch(criteria, SCMHeadObserver.collect(), null, listener);
+                parallelism.add(getRetrieveParallelism());
+            }
+            super.retrieve(criteria, observer, event, listener);
+        }
+    }
+
+    /**
+     * A {@link MockSCMSource} that supports incremental retrieval using a snapshot of the branch revisions as the
+     * checkpoint.
+     */
+    private static class IncrementalSource extends MockSCMSource {
+
+        private static final String EXPIRED = "expired";
+
+        private final MockSCMController controller;
+
+        private int retrieveChangesCalls;
+
+        private IncrementalSource(MockSCMController controller, String repository) {
+            super(controller, repository, new MockSCMDiscoverBranches());
+            this.controller = controller;
+        }
+
+        @Override
+        protected String checkpoint(@NonNull TaskListener listener) throws IOException {
+            return encode(snapshot());
+        }
+
+        @Override
+        protected SCMHeadChanges retrieveChanges(@CheckForNull SCMSourceCriteria criteria,
+                                                 @NonNull SCMHeadObserver observer, @NonNull String checkpoint,
+                                                 @NonNull TaskListener listener)
+                throws IOException, InterruptedException {
+            retrieveChangesCalls++;
+            if (EXPIRED.equals(checkpoint)) {
+                return null;
+            }
+            Map<String, String> previous = decode(checkpoint);
+            Map<String, String> current = snapshot();
+            for (Map.Entry<String, String> entry : current.entrySet()) {
+                if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                    MockSCMHead head = new MockSCMHead(entry.getKey());
+                    observer.observe(head, new MockSCMRevision(head, entry.getValue()));
+                }
+            }
+            Set<SCMHead> removed = new HashSet<SCMHead>();
+            for (String branch : previous.keySet()) {
+                if (!current.containsKey(branch)) {
+                    removed.add(new MockSCMHead(branch));
+                }
+            }
+            return SCMHeadChanges.incremental(removed, encode(current));
+        }
+
+        private Map<String, String> snapshot() throws IOException {
+            Map<String, String> result = new LinkedHashMap<String, String>();
+            for (String branch : controller.listBranches(getRepository())) {
+                result.put(branch, controller.getRevision(getRepository(), branch));
+            }
+            return result;
+        }
+
+        private static String encode(Map<String, String> snapshot) {
+            StringBuilder result = new StringBuilder();
+            for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+                if (result.length() > 0) {
+                    result.append(';');
+                }
+                result.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+            return result.toString();
+        }
+
+        private static Map<String, String> decode(String checkpoint) {
+            Map<String, String> result = new LinkedHashMap<String, String>();
+            for (String entry : checkpoint.split(";")) {
+                int index = entry.indexOf('=');
+                if (index > 0) {
+                    result.put(entry.substring(0, index), entry.substring(index + 1));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl;
+
+import hudson.model.FreeStyleProject;
+import hudson.triggers.SCMTrigger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import jenkins.scm.impl.mock.MockSCM;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.triggers.SCMTriggerItem;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class SCM2NotifierTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Before
+    public void reset() {
+        RecordingSCM.threads.clear();
+    }
+
+    @Test
+    public void afterSaveRunsOffTheSavingThread() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            FreeStyleProject p = triggeredProject(c);
+            long completed = SCM2Notifier.getStats().getCompleted();
+            p.save();
+            awaitCompleted(completed + 1);
+            assertThat(RecordingSCM.threads.size(), is(1));
+            assertThat(RecordingSCM.threads.get(0), not(is(Thread.currentThread().getName())));
+            assertThat(RecordingSCM.threads.get(0), startsWith(SCM2Notifier.class.getSimpleName()));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void repeatedSavesAreCoalesced() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            FreeStyleProject p = triggeredProject(c);
+            CountDownLatch release = blockExecutor();
+            long completed = SCM2Notifier.getStats().getCompleted();
+            long coalesced = SCM2Notifier.getStats().getCoalesced();
+            try {
+                for (int i = 0; i < 5; i++) {
+                    p.save();
+                }
+                assertThat(SCM2Notifier.getStats().getPending(), is(1));
+                assertThat(SCM2Notifier.getStats().getCoalesced(), is(coalesced + 4));
+            } finally {
+                release.countDown();
+            }
+            awaitCompleted(completed + 1);
+            assertThat(RecordingSCM.threads.size(), is(1));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void reconfigurationWhileQueuedIsRechecked() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            FreeStyleProject p = triggeredProject(c);
+            CountDownLatch release = blockExecutor();
+            long completed = SCM2Notifier.getStats().getCompleted();
+            try {
+                p.save();
+                assertThat(SCM2Notifier.getStats().getPending(), is(1));
+                // removing the trigger before the callback starts means the callback no longer applies
+                p.removeTrigger(r.jenkins.getDescriptorByType(SCMTrigger.DescriptorImpl.class));
+            } finally {
+                release.countDown();
+            }
+            awaitCompleted(completed + 1);
+            assertThat(RecordingSCM.threads.size(), is(0));
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Creates a project with a {@link RecordingSCM} and post commit hooks enabled, waiting for the callbacks of the
+     * saves made while configuring it.
+     */
+    private FreeStyleProject triggeredProject(MockSCMController c) throws Exception {
+        c.createRepository("foo");
+        FreeStyleProject p = r.createFreeStyleProject();
+        p.setScm(new RecordingSCM(c.getId(), "foo", "master", null));
+        p.addTrigger(new SCMTrigger(""));
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while ((SCM2Notifier.getStats().getPending() > 0 || SCM2Notifier.getStats().getRunning() > 0)
+                && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        RecordingSCM.threads.clear();
+        return p;
+    }
+
+    /**
+     * Occupies every callback thread until the returned latch is released.
+     */
+    private static CountDownLatch blockExecutor() throws InterruptedException {
+        int threads = SCM2Notifier.executor.getMaximumPoolSize();
+        final CountDownLatch started = new CountDownLatch(threads);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            SCM2Notifier.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        assertThat(started.await(30, TimeUnit.SECONDS), is(true));
+        return release;
+    }
+
+    private static void awaitCompleted(long count) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (SCM2Notifier.getStats().getCompleted() < count && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(SCM2Notifier.getStats().getCompleted(), is(count));
+    }
+
+    /**
+     * A {@link MockSCM} that records the threads its {@link #afterSave(SCMTriggerItem)} is called from.
+     */
+    public static class RecordingSCM extends MockSCM {
+
+        static final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+
+        public RecordingSCM(String controllerId, String repository, String head, String revision) {
+            super(controllerId, repository, head, revision);
+        }
+
+        @Override
+        public void afterSave(SCMTriggerItem owner) {
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+}
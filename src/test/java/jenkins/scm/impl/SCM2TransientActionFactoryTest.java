@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl;
+
+import hudson.model.Action;
+import hudson.model.FreeStyleProject;
+import java.util.Collection;
+import jenkins.scm.impl.mock.MockSCM;
+import jenkins.scm.impl.mock.MockSCMController;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class SCM2TransientActionFactoryTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void actionsCachedUntilSaved() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.setScm(new MockSCM(c.getId(), "foo", "master", null));
+            SCM2TransientActionFactory factory = new SCM2TransientActionFactory();
+            Collection<? extends Action> actions = factory.createFor(p);
+            assertThat(SCM2TransientActionFactory.cacheSize(), is(1));
+            assertThat(factory.createFor(p), sameInstance((Object) actions));
+            p.save();
+            Collection<? extends Action> recomputed = factory.createFor(p);
+            assertThat(recomputed, not(sameInstance((Object) actions)));
+            assertThat(factory.createFor(p), sameInstance((Object) recomputed));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void actionsRecomputedAfterInvalidate() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.setScm(new MockSCM(c.getId(), "foo", "master", null));
+            SCM2TransientActionFactory factory = new SCM2TransientActionFactory();
+            Collection<? extends Action> actions = factory.createFor(p);
+            SCM2TransientActionFactory.invalidate(p);
+            assertThat(SCM2TransientActionFactory.cacheSize(), is(0));
+            assertThat(factory.createFor(p), not(sameInstance((Object) actions)));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void cacheDroppedWhenDeleted() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.setScm(new MockSCM(c.getId(), "foo", "master", null));
+            FreeStyleProject other = r.createFreeStyleProject();
+            other.setScm(new MockSCM(c.getId(), "foo", "master", null));
+            SCM2TransientActionFactory factory = new SCM2TransientActionFactory();
+            factory.createFor(p);
+            Collection<? extends Action> otherActions = factory.createFor(other);
+            assertThat(SCM2TransientActionFactory.cacheSize(), is(2));
+            String fullName = p.getFullName();
+            assertThat(SCM2TransientActionFactory.isCached(fullName), is(true));
+            p.delete();
+            assertThat(SCM2TransientActionFactory.isCached(fullName), is(false));
+            assertThat(SCM2TransientActionFactory.cacheSize(), is(1));
+            assertThat(factory.createFor(other), sameInstance((Object) otherActions));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void cacheDroppedWhenRenamed() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            FreeStyleProject p = r.createFreeStyleProject("before");
+            p.setScm(new MockSCM(c.getId(), "foo", "master", null));
+            SCM2TransientActionFactory factory = new SCM2TransientActionFactory();
+            factory.createFor(p);
+            assertThat(SCM2TransientActionFactory.isCached("before"), is(true));
+            p.renameTo("after");
+            assertThat(SCM2TransientActionFactory.isCached("before"), is(false));
+        } finally {
+            c.close();
+        }
+    }
+}
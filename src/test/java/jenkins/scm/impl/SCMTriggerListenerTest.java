@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl;
+
+import hudson.model.FreeStyleProject;
+import hudson.triggers.SCMTrigger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.api.SCMEvents;
+import jenkins.scm.api.SCMHeadEvent;
+import jenkins.scm.impl.mock.MockSCM;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMHeadEvent;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SCMTriggerListenerTest {
+
+    @ClassRule
+    public static JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void triggerAddedAfterIndexBuiltIsPolled() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.setScm(new MockSCM(c.getId(), "foo", "master", null));
+            // builds the index while the project has no trigger
+            long watermark = SCMEvents.getWatermark();
+            SCMHeadEvent.fireNow(new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev1"));
+            assertThat(SCMEvents.awaitAll(watermark, 30, TimeUnit.SECONDS), is(true));
+            assertThat(SCMTriggerListener.isTracked(p), is(false));
+            // adding the trigger saves the project which must update the index
+            SCMTrigger trigger = new SCMTrigger("");
+            p.addTrigger(trigger);
+            trigger.start(p, true);
+            assertThat(SCMTriggerListener.isTracked(p), is(true));
+            watermark = SCMEvents.getWatermark();
+            SCMHeadEvent.fireNow(new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev2"));
+            assertThat(SCMEvents.awaitAll(watermark, 30, TimeUnit.SECONDS), is(true));
+            long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (!trigger.getLogFile().isFile() && System.currentTimeMillis() < timeout) {
+                Thread.sleep(100);
+            }
+            assertThat(trigger.getLogFile().isFile(), is(true));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void triggerRemovedAfterIndexBuiltIsNotTracked() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.setScm(new MockSCM(c.getId(), "foo", "master", null));
+            SCMTrigger trigger = new SCMTrigger("");
+            p.addTrigger(trigger);
+            assertThat(SCMTriggerListener.isTracked(p), is(true));
+            // removing the trigger saves the project which must update the index
+            p.removeTrigger(r.jenkins.getDescriptorByType(SCMTrigger.DescriptorImpl.class));
+            assertThat(p.getTrigger(SCMTrigger.class), nullValue());
+            assertThat(SCMTriggerListener.isTracked(p), is(false));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void scmChangedAfterIndexBuiltIsPolled() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.setScm(new MockSCM(c.getId(), "foo", "master", null));
+            SCMTrigger trigger = new SCMTrigger("");
+            p.addTrigger(trigger);
+            trigger.start(p, true);
+            // builds the index with the SCM for master
+            assertThat(SCMTriggerListener.isTracked(p), is(true));
+            // changing the SCM saves the project which must refresh the SCMs in the index
+            p.setScm(new MockSCM(c.getId(), "foo", "feature", null));
+            long watermark = SCMEvents.getWatermark();
+            SCMHeadEvent.fireNow(new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "feature", "rev1"));
+            assertThat(SCMEvents.awaitAll(watermark, 30, TimeUnit.SECONDS), is(true));
+            long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (!trigger.getLogFile().isFile() && System.currentTimeMillis() < timeout) {
+                Thread.sleep(100);
+            }
+            assertThat(trigger.getLogFile().isFile(), is(true));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void burstForSameItemIsPolledOnce() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        final CountDownLatch started = new CountDownLatch(SCMTriggerListener.pollingExecutor.getMaximumPoolSize());
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            c.createRepository("foo");
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.setScm(new MockSCM(c.getId(), "foo", "master", null));
+            SCMTrigger trigger = new SCMTrigger("");
+            p.addTrigger(trigger);
+            trigger.start(p, true);
+            // occupy every polling thread so that the requests for the burst have to wait
+            for (int i = 0; i < SCMTriggerListener.pollingExecutor.getMaximumPoolSize(); i++) {
+                SCMTriggerListener.pollingExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            assertThat(started.await(30, TimeUnit.SECONDS), is(true));
+            long watermark = SCMEvents.getWatermark();
+            for (int i = 0; i < 10; i++) {
+                SCMHeadEvent.fireNow(new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master",
+                        "burst" + i));
+            }
+            assertThat(SCMEvents.awaitAll(watermark, 30, TimeUnit.SECONDS), is(true));
+            assertThat(SCMTriggerListener.pollingExecutor.getQueue().size(), is(1));
+        } finally {
+            release.countDown();
+            c.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty() throws Exception {
+        LatencyHistogram instance = new LatencyHistogram();
+        assertThat(instance.getCount(), is(0L));
+        assertThat(instance.getMeanMillis(), is(0.0));
+        assertThat(instance.getP99Millis(), is(0.0));
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() throws Exception {
+        LatencyHistogram instance = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            instance.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertThat(instance.getCount(), is(100L));
+        assertThat(instance.getMeanMillis(), closeTo(50.5, 0.001));
+        assertThat(instance.getMaxMillis(), closeTo(100.0, 0.001));
+        // buckets are sqrt(2) wide so the estimate is at least the true value and less than sqrt(2) times it
+        assertThat(instance.getP50Millis(), allOf(greaterThanOrEqualTo(50.0), lessThanOrEqualTo(50.0 * 1.415)));
+        assertThat(instance.getP95Millis(), allOf(greaterThanOrEqualTo(95.0), lessThanOrEqualTo(100.0)));
+        assertThat(instance.getP99Millis(), allOf(greaterThanOrEqualTo(99.0), lessThanOrEqualTo(100.0)));
+    }
+
+    @Test
+    public void negativeSamplesRecordedAsZero() throws Exception {
+        LatencyHistogram instance = new LatencyHistogram();
+        instance.record(-5L);
+        assertThat(instance.getCount(), is(1L));
+        assertThat(instance.getMaxMillis(), is(0.0));
+        assertThat(instance.getP50Millis(), is(0.0));
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMHeadEvent;
+import jenkins.scm.impl.mock.MockSCMSourceEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SCMEventExecutorServiceTest {
+
+    private SCMEventExecutorService instance;
+
+    @Before
+    public void setUp() {
+        instance = new SCMEventExecutorService(1, 1, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        instance.shutdownNow();
+        instance.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void singleton() throws Exception {
+        assertThat(SCMEventExecutorService.get(), sameInstance(SCMEventExecutorService.get()));
+        assertThat(SCMEventExecutorService.get().isShutdown(), is(false));
+    }
+
+    @Test
+    public void executeRunsOnDedicatedThread() throws Exception {
+        final AtomicReference<String> name = new AtomicReference<String>();
+        final CountDownLatch done = new CountDownLatch(1);
+        instance.execute(new Runnable() {
+            @Override
+            public void run() {
+                name.set(Thread.currentThread().getName());
+                done.countDown();
+            }
+        });
+        assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(name.get(), startsWith("SCMEvent"));
+    }
+
+    @Test
+    public void scheduleHandsOffAfterDelay() throws Exception {
+        long start = System.nanoTime();
+        ScheduledFuture<String> future = instance.schedule(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return Thread.currentThread().getName();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        String name = future.get(10, TimeUnit.SECONDS);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(100L));
+        assertThat(name, startsWith("SCMEvent"));
+        assertThat(name, not(startsWith("SCMEvent.scheduler")));
+        assertThat(future.isDone(), is(true));
+    }
+
+    @Test
+    public void saturatedRunsOnCaller() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        Runnable blocker = new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        };
+        instance.execute(blocker); // occupies the only thread
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        instance.execute(blocker); // occupies the only queue slot
+        final AtomicReference<Thread> ranOn = new AtomicReference<Thread>();
+        instance.execute(new Runnable() {
+            @Override
+            public void run() {
+                ranOn.set(Thread.currentThread());
+            }
+        });
+        assertThat(ranOn.get(), sameInstance(Thread.currentThread()));
+        assertThat(instance.getRejectedCount(), is(1L));
+        assertThat(instance.getQueueSize(), is(1));
+        release.countDown();
+    }
+
+    @Test
+    public void sourceEventsUsePriorityLane() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            MockSCMSourceEvent source = new MockSCMSourceEvent("test", SCMEvent.Type.CREATED, c, "foo");
+            MockSCMHeadEvent head = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "rev");
+            assertThat(SCMEventExecutorService.laneKey(source), is("source.CREATED"));
+            assertThat(SCMEventExecutorService.laneKey(head), is("head.UPDATED"));
+            assertThat(instance.laneOf(source), is(SCMEventExecutorService.PRIORITY_LANE));
+            assertThat(instance.laneOf(head), is(SCMEventExecutorService.DEFAULT_LANE));
+            final AtomicReference<String> name = new AtomicReference<String>();
+            final CountDownLatch done = new CountDownLatch(1);
+            instance.execute(new Runnable() {
+                @Override
+                public void run() {
+                    name.set(Thread.currentThread().getName());
+                    done.countDown();
+                }
+            }, source);
+            assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(name.get(), startsWith("SCMEvent.priority"));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void saturatedDefaultLaneDoesNotBlockPriorityLane() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            MockSCMSourceEvent source = new MockSCMSourceEvent("test", SCMEvent.Type.REMOVED, c, "foo");
+            Runnable blocker = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                }
+            };
+            instance.execute(blocker); // occupies the only default lane thread
+            final CountDownLatch done = new CountDownLatch(1);
+            instance.execute(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            }, source);
+            assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            release.countDown();
+            c.close();
+        }
+    }
+
+    @Test
+    public void dropPolicyShedsNewEvent() throws Exception {
+        instance.shutdownNow();
+        instance = new SCMEventExecutorService(1, 1, 1, 1, TimeUnit.SECONDS,
+                SCMEventExecutorService.OverflowPolicy.DROP);
+        MockSCMController c = MockSCMController.create();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(release);
+            TestShedable task =
+                    new TestShedable(new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "r1"));
+            assertThat(instance.tryExecute(task), is(false));
+            assertThat(task.shed.get(), is(true));
+            assertThat(instance.getShedCount(), is(1L));
+        } finally {
+            release.countDown();
+            c.close();
+        }
+    }
+
+    @Test
+    public void dropOldestDuplicatePolicyEvictsQueuedDuplicate() throws Exception {
+        instance.shutdownNow();
+        instance = new SCMEventExecutorService(1, 1, 1, 1, TimeUnit.SECONDS,
+                SCMEventExecutorService.OverflowPolicy.DROP_OLDEST_DUPLICATE);
+        MockSCMController c = MockSCMController.create();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            MockSCMHeadEvent event = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "r1");
+            instance.execute(new Blocker(release, new CountDownLatch(1))); // occupies the only thread
+            TestShedable older = new TestShedable(event);
+            assertThat(instance.tryExecute(older), is(true)); // occupies the only queue slot
+            TestShedable newer = new TestShedable(event);
+            assertThat(instance.tryExecute(newer), is(true));
+            assertThat(older.shed.get(), is(true));
+            assertThat(newer.shed.get(), is(false));
+            assertThat(instance.getShedCount(), is(1L));
+        } finally {
+            release.countDown();
+            c.close();
+        }
+    }
+
+    @Test
+    public void scheduledTaskOnSaturatedLaneDoesNotBlockScheduler() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(release);
+            ScheduledFuture<String> blocked = instance.schedule(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return Thread.currentThread().getName();
+                }
+            }, 10, TimeUnit.MILLISECONDS);
+            final CountDownLatch done = new CountDownLatch(1);
+            long start = System.nanoTime();
+            instance.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            }, new MockSCMSourceEvent("test", SCMEvent.Type.CREATED, c, "foo"), 50, TimeUnit.MILLISECONDS);
+            // the hand-off to the saturated lane must not have tied up the scheduler thread
+            assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(2000L));
+            assertThat(blocked.isDone(), is(false));
+            release.countDown();
+            String name = blocked.get(10, TimeUnit.SECONDS);
+            assertThat(name, startsWith("SCMEvent"));
+            assertThat(name, not(startsWith("SCMEvent.scheduler")));
+            assertThat(instance.getRejectedCount(), is(0L));
+        } finally {
+            release.countDown();
+            c.close();
+        }
+    }
+
+    @Test
+    public void eventTaskOnSaturatedLaneIsRejectedRatherThanRunOnCaller() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            saturate(release);
+            final AtomicBoolean ran = new AtomicBoolean();
+            try {
+                instance.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ran.set(true);
+                    }
+                }, new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "r1"));
+                fail("Expected the task to be rejected");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            assertThat(ran.get(), is(false));
+        } finally {
+            release.countDown();
+            c.close();
+        }
+    }
+
+    private void saturate(CountDownLatch release) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        instance.execute(new Blocker(release, started)); // occupies the only thread
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        instance.execute(new Blocker(release, new CountDownLatch(1))); // occupies the only queue slot
+    }
+
+    private static class Blocker implements Runnable {
+        private final CountDownLatch release;
+        private final CountDownLatch started;
+
+        Blocker(CountDownLatch release, CountDownLatch started) {
+            this.release = release;
+            this.started = started;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static class TestShedable implements SCMEventExecutorService.Shedable {
+        private final SCMEvent<?> event;
+        private final AtomicBoolean shed = new AtomicBoolean();
+
+        TestShedable(SCMEvent<?> event) {
+            this.event = event;
+        }
+
+        @Override
+        public SCMEvent<?> getEvent() {
+            return event;
+        }
+
+        @Override
+        public void shed() {
+            shed.set(true);
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMHeadEvent;
+import jenkins.scm.impl.mock.MockSCMSourceEvent;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SCMEventJournalTest {
+
+    @ClassRule
+    public static JenkinsRule r = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void unfinishedEventsRestoredAfterRestart() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            File dir = tmp.newFolder();
+            MockSCMHeadEvent done = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "r1");
+            MockSCMHeadEvent pending = new MockSCMHeadEvent("test", SCMEvent.Type.CREATED, c, "foo", "feature", "r2");
+            SCMEventJournal journal = new SCMEventJournal(dir);
+            assertThat(journal.takePrevious(), is(empty()));
+            SCMEventJournal.Entry doneEntry = journal.recordEnqueued(done);
+            SCMEventJournal.Entry pendingEntry = journal.recordEnqueued(pending);
+            assertThat(doneEntry, notNullValue());
+            assertThat(pendingEntry, notNullValue());
+            journal.recordCompleted(doneEntry);
+            journal.close();
+
+            SCMEventJournal restarted = new SCMEventJournal(dir);
+            List<File> previous = restarted.takePrevious();
+            List<SCMEvent<?>> restored = SCMEventJournal.restore(previous);
+            assertThat(restored, contains((SCMEvent<?>) pending));
+            assertThat(restarted.takePrevious(), is(empty()));
+            restarted.close();
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void tornRecordIgnored() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            File dir = tmp.newFolder();
+            MockSCMHeadEvent pending = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "r1");
+            SCMEventJournal journal = new SCMEventJournal(dir);
+            journal.recordEnqueued(pending);
+            journal.close();
+            File[] segments = dir.listFiles();
+            assertThat(segments.length, is(1));
+            // simulate a crash part way through writing the next record
+            RandomAccessFile raf = new RandomAccessFile(segments[0], "rw");
+            try {
+                raf.seek(raf.length());
+                raf.writeByte(SCMEventJournal.ENQUEUED);
+                raf.writeInt(42);
+            } finally {
+                raf.close();
+            }
+            SCMEventJournal restarted = new SCMEventJournal(dir);
+            assertThat(SCMEventJournal.restore(restarted.takePrevious()), contains((SCMEvent<?>) pending));
+            restarted.close();
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void eventsWithoutMementoNotJournaled() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            File dir = tmp.newFolder();
+            SCMEventJournal journal = new SCMEventJournal(dir);
+            assertThat(journal.recordEnqueued(new MockSCMSourceEvent("test", SCMEvent.Type.CREATED, c, "foo")),
+                    nullValue());
+            journal.close();
+            SCMEventJournal restarted = new SCMEventJournal(dir);
+            assertThat(SCMEventJournal.restore(restarted.takePrevious()), is(empty()));
+            restarted.close();
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void segmentsRotateWithoutCompletions() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        String property = SCMEventJournal.class.getName() + ".segmentBytes";
+        System.setProperty(property, "1024");
+        try {
+            File dir = tmp.newFolder();
+            SCMEventJournal journal = new SCMEventJournal(dir);
+            for (int i = 0; i < 20; i++) {
+                journal.recordEnqueued(new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master",
+                        "r" + i));
+            }
+            assertThat(journal.awaitWritten(10, TimeUnit.SECONDS), is(true));
+            assertThat(dir.listFiles().length, greaterThan(1));
+            journal.close();
+            SCMEventJournal restarted = new SCMEventJournal(dir);
+            assertThat(SCMEventJournal.restore(restarted.takePrevious()).size(), is(20));
+            restarted.close();
+        } finally {
+            System.clearProperty(property);
+            c.close();
+        }
+    }
+
+    @Test
+    public void closeIsTerminal() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            File dir = tmp.newFolder();
+            SCMEventJournal journal = new SCMEventJournal(dir);
+            SCMEventJournal.Entry entry = journal.recordEnqueued(
+                    new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "r1"));
+            assertThat(entry, notNullValue());
+            journal.close();
+            File[] segments = dir.listFiles();
+            assertThat(segments.length, is(1));
+            long length = segments[0].length();
+            // late records from dispatches that were still running must not reopen the journal
+            journal.recordCompleted(entry);
+            assertThat(journal.recordEnqueued(
+                    new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "r2")), nullValue());
+            assertThat(journal.takePrevious(), is(empty()));
+            assertThat(dir.listFiles().length, is(1));
+            assertThat(segments[0].length(), is(length));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void replayKeepsSegmentsUntilReplayedEventsAreJournaled() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            File dir = tmp.newFolder();
+            MockSCMHeadEvent pending = new MockSCMHeadEvent("test", SCMEvent.Type.UPDATED, c, "foo", "master", "r1");
+            SCMEventJournal journal = new SCMEventJournal(dir);
+            assertThat(journal.recordEnqueued(pending), notNullValue());
+            journal.close();
+
+            // the journal under test is not the one the dispatcher records to, so the replayed event is not
+            // journaled by this session and the old segment must survive for the next one
+            SCMEventJournal restarted = new SCMEventJournal(dir);
+            restarted.replay();
+            restarted.close();
+
+            SCMEventJournal again = new SCMEventJournal(dir);
+            assertThat(SCMEventJournal.restore(again.takePrevious()), contains((SCMEvent<?>) pending));
+            again.close();
+        } finally {
+            c.close();
+        }
+    }
+}
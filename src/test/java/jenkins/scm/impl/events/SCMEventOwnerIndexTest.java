@@ -0,0 +1,304 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.events;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.AbstractItem;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.TopLevelItem;
+import hudson.model.TopLevelItemDescriptor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMNavigator;
+import jenkins.scm.api.SCMNavigatorOwner;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceCriteria;
+import jenkins.scm.api.SCMSourceOwner;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMNavigator;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class SCMEventOwnerIndexTest {
+
+    private static final String SERVER_A = "https://a.example.com/";
+
+    private static final String SERVER_B = "https://b.example.com/";
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void sourceOwnerCandidates() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            OwnerItem a = r.jenkins.createProject(OwnerItem.class, "a");
+            a.setSources(new IndexedSource(c, "foo", SERVER_A));
+            a.save();
+            OwnerItem b = r.jenkins.createProject(OwnerItem.class, "b");
+            b.setSources(new IndexedSource(c, "bar", SERVER_A));
+            b.save();
+            OwnerItem any = r.jenkins.createProject(OwnerItem.class, "any");
+            any.setSources(new IndexedSource(c, "bar", null));
+            any.save();
+            OwnerItem unindexed = r.jenkins.createProject(OwnerItem.class, "unindexed");
+            unindexed.setSources(new MockSCMSource(c, "foo"));
+            unindexed.save();
+            SCMEventOwnerIndex index = SCMEventOwnerIndex.get();
+
+            assertThat(index.sourceOwners("foo", SERVER_A), containsInAnyOrder((SCMSourceOwner) a, unindexed));
+            assertThat(index.sourceOwners("foo", SERVER_B), containsInAnyOrder((SCMSourceOwner) unindexed));
+            assertThat(index.sourceOwners("foo", null), containsInAnyOrder((SCMSourceOwner) a, unindexed));
+            assertThat(index.sourceOwners("bar", SERVER_B), containsInAnyOrder((SCMSourceOwner) any, unindexed));
+            assertThat(index.sourceOwners("baz", SERVER_A), containsInAnyOrder((SCMSourceOwner) unindexed));
+
+            // save
+            a.setSources(new IndexedSource(c, "bar", SERVER_A));
+            a.save();
+            assertThat(index.sourceOwners("foo", SERVER_A), containsInAnyOrder((SCMSourceOwner) unindexed));
+            assertThat(index.sourceOwners("bar", SERVER_A),
+                    containsInAnyOrder((SCMSourceOwner) a, b, any, unindexed));
+
+            // rename
+            a.rename("renamed");
+            assertThat(r.jenkins.getItem("renamed"), sameInstance((Object) a));
+            assertThat(index.sourceOwners("bar", SERVER_A),
+                    containsInAnyOrder((SCMSourceOwner) a, b, any, unindexed));
+
+            // create after the index is built
+            OwnerItem d = r.jenkins.createProject(OwnerItem.class, "d");
+            d.setSources(new IndexedSource(c, "foo", SERVER_B));
+            d.save();
+            assertThat(index.sourceOwners("foo", SERVER_B), containsInAnyOrder((SCMSourceOwner) d, unindexed));
+
+            // delete
+            b.delete();
+            d.delete();
+            assertThat(index.sourceOwners("bar", SERVER_A), containsInAnyOrder((SCMSourceOwner) a, any, unindexed));
+            assertThat(index.sourceOwners("foo", SERVER_B), containsInAnyOrder((SCMSourceOwner) unindexed));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void navigatorOwnerCandidates() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            OwnerItem a = r.jenkins.createProject(OwnerItem.class, "a");
+            a.setNavigators(new IndexedNavigator(c, SERVER_A));
+            a.save();
+            OwnerItem b = r.jenkins.createProject(OwnerItem.class, "b");
+            b.setNavigators(new IndexedNavigator(c, SERVER_B));
+            b.save();
+            OwnerItem unindexed = r.jenkins.createProject(OwnerItem.class, "unindexed");
+            unindexed.setNavigators(new MockSCMNavigator(c));
+            unindexed.save();
+            SCMEventOwnerIndex index = SCMEventOwnerIndex.get();
+
+            assertThat(index.navigatorOwners(SERVER_A), containsInAnyOrder((SCMNavigatorOwner) a, unindexed));
+            assertThat(index.navigatorOwners(SERVER_B), containsInAnyOrder((SCMNavigatorOwner) b, unindexed));
+            assertThat(index.navigatorOwners("https://c.example.com/"),
+                    containsInAnyOrder((SCMNavigatorOwner) unindexed));
+            assertThat(index.navigatorOwners(null), containsInAnyOrder((SCMNavigatorOwner) a, b, unindexed));
+
+            // save
+            a.setNavigators(new IndexedNavigator(c, SERVER_B));
+            a.save();
+            assertThat(index.navigatorOwners(SERVER_A), containsInAnyOrder((SCMNavigatorOwner) unindexed));
+            assertThat(index.navigatorOwners(SERVER_B), containsInAnyOrder((SCMNavigatorOwner) a, b, unindexed));
+
+            // rename
+            b.rename("renamed");
+            assertThat(index.navigatorOwners(SERVER_B), containsInAnyOrder((SCMNavigatorOwner) a, b, unindexed));
+
+            // delete
+            a.delete();
+            assertThat(index.navigatorOwners(SERVER_B), containsInAnyOrder((SCMNavigatorOwner) b, unindexed));
+            assertThat(index.navigatorOwners(null), containsInAnyOrder((SCMNavigatorOwner) b, unindexed));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void saveWhileInvalidIsIndexed() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            OwnerItem a = r.jenkins.createProject(OwnerItem.class, "a");
+            a.setSources(new IndexedSource(c, "foo", SERVER_A));
+            a.save();
+            SCMEventOwnerIndex index = SCMEventOwnerIndex.get();
+            index.invalidate();
+            // a save while there is no index must be reflected once the index is rebuilt
+            a.setSources(new IndexedSource(c, "bar", SERVER_A));
+            a.save();
+            assertThat(index.sourceOwners("foo", SERVER_A).iterator().hasNext(), is(false));
+            assertThat(index.sourceOwners("bar", SERVER_A), containsInAnyOrder((SCMSourceOwner) a));
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * A {@link MockSCMSource} that provides index keys.
+     */
+    public static class IndexedSource extends MockSCMSource {
+
+        private final String serverUrl;
+
+        public IndexedSource(MockSCMController controller, String repository, String serverUrl) {
+            super(controller, repository);
+            this.serverUrl = serverUrl;
+        }
+
+        @Override
+        public String getEventSourceName() {
+            return getRepository();
+        }
+
+        @Override
+        public String getEventServerUrl() {
+            return serverUrl;
+        }
+    }
+
+    /**
+     * A {@link MockSCMNavigator} that provides index keys.
+     */
+    public static class IndexedNavigator extends MockSCMNavigator {
+
+        private final String serverUrl;
+
+        public IndexedNavigator(MockSCMController controller, String serverUrl) {
+            super(controller);
+            this.serverUrl = serverUrl;
+        }
+
+        @Override
+        public String getEventServerUrl() {
+            return serverUrl;
+        }
+    }
+
+    /**
+     * A minimal top level item owning sources and navigators.
+     */
+    public static class OwnerItem extends AbstractItem implements TopLevelItem, SCMNavigatorOwner {
+
+        private List<SCMSource> sources = new ArrayList<SCMSource>();
+
+        private List<SCMNavigator> navigators = new ArrayList<SCMNavigator>();
+
+        public OwnerItem(ItemGroup parent, String name) {
+            super(parent, name);
+        }
+
+        public void setSources(SCMSource... sources) {
+            this.sources = new ArrayList<SCMSource>(Arrays.asList(sources));
+            for (SCMSource source : sources) {
+                source.setOwner(this);
+            }
+        }
+
+        public void setNavigators(SCMNavigator... navigators) {
+            this.navigators = new ArrayList<SCMNavigator>(Arrays.asList(navigators));
+        }
+
+        public void rename(String newName) throws IOException {
+            renameTo(newName);
+        }
+
+        @NonNull
+        @Override
+        public List<SCMSource> getSCMSources() {
+            return sources;
+        }
+
+        @Override
+        public SCMSource getSCMSource(String sourceId) {
+            for (SCMSource source : sources) {
+                if (source.getId().equals(sourceId)) {
+                    return source;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void onSCMSourceUpdated(@NonNull SCMSource source) {
+        }
+
+        @Override
+        public SCMSourceCriteria getSCMSourceCriteria(@NonNull SCMSource source) {
+            return null;
+        }
+
+        @NonNull
+        @Override
+        public List<SCMNavigator> getSCMNavigators() {
+            return navigators;
+        }
+
+        @Override
+        public Collection<? extends Job> getAllJobs() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public TopLevelItemDescriptor getDescriptor() {
+            return (TopLevelItemDescriptor) Jenkins.getActiveInstance().getDescriptorOrDie(OwnerItem.class);
+        }
+
+        @TestExtension
+        public static class DescriptorImpl extends TopLevelItemDescriptor {
+
+            @Override
+            public String getDisplayName() {
+                return "Owner";
+            }
+
+            @Override
+            public TopLevelItem newInstance(ItemGroup parent, String name) {
+                return new OwnerItem(parent, name);
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.scm.SCM;
 import java.util.Collections;
 import java.util.Map;
+import jenkins.scm.api.SCMEvent;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadEvent;
 import jenkins.scm.api.SCMNavigator;
@@ -65,6 +66,20 @@ public class MockSCMHeadEvent extends SCMHeadEvent<String> {
         this.revision = revision;
     }
 
+    public MockSCMHeadEvent(@CheckForNull String origin, @NonNull Type type, long timestamp,
+                            MockSCMController controller, String repository, String head, String revision) {
+        super(type, timestamp, head, origin);
+        this.controller = controller;
+        this.repository = repository;
+        this.head = head;
+        this.revision = revision;
+    }
+
+    @Override
+    public Memento memento() {
+        return new MementoImpl(getOrigin(), getType(), getTimestamp(), controller.getId(), repository, head, revision);
+    }
+
     @Override
     public boolean isMatch(@NonNull SCMNavigator navigator) {
         return navigator instanceof MockSCMNavigator
@@ -106,4 +121,34 @@ public class MockSCMHeadEvent extends SCMHeadEvent<String> {
         }
         return false;
     }
+
+    private static class MementoImpl implements Memento {
+        private static final long serialVersionUID = 1L;
+        private final String origin;
+        private final Type type;
+        private final long timestamp;
+        private final String controllerId;
+        private final String repository;
+        private final String head;
+        private final String revision;
+
+        MementoImpl(String origin, Type type, long timestamp, String controllerId, String repository, String head,
+                    String revision) {
+            this.origin = origin;
+            this.type = type;
+            this.timestamp = timestamp;
+            this.controllerId = controllerId;
+            this.repository = repository;
+            this.head = head;
+            this.revision = revision;
+        }
+
+        @Override
+        public SCMEvent<?> restore() {
+            MockSCMController controller = MockSCMController.lookup(controllerId);
+            return controller == null
+                    ? null
+                    : new MockSCMHeadEvent(origin, type, timestamp, controller, repository, head, revision);
+        }
+    }
 }
@@ -26,6 +26,7 @@ package jenkins.scm.impl.trait;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.model.Items;
 import hudson.model.TaskListener;
 import hudson.util.LogTaskListener;
 import java.io.IOException;
@@ -65,6 +66,40 @@ public class RegexSCMSourceFilterTraitTest {
         }
     }
 
+    @Test
+    public void given_navigatorWithIncludeRegexRule_when_scanning_then_wholeNameMustMatch() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("fo");
+            c.createRepository("foo");
+            c.createRepository("afo");
+            final MockSCMNavigator src = new MockSCMNavigator(c, new RegexSCMSourceFilterTrait("fo"));
+            SimpleSCMSourceObserver observer = new SimpleSCMSourceObserver();
+            src.visitSources(observer);
+            assertThat(observer.getNames(), containsInAnyOrder("fo"));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void given_deserializedTrait_when_scanning_then_ruleApplied() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            c.createRepository("bar");
+            c.createRepository("manchu");
+            RegexSCMSourceFilterTrait trait = (RegexSCMSourceFilterTrait) Items.XSTREAM2.fromXML(
+                    Items.XSTREAM2.toXML(new RegexSCMSourceFilterTrait("[fb].+")));
+            final MockSCMNavigator src = new MockSCMNavigator(c, trait);
+            SimpleSCMSourceObserver observer = new SimpleSCMSourceObserver();
+            src.visitSources(observer);
+            assertThat(observer.getNames(), containsInAnyOrder("foo", "bar"));
+        } finally {
+            c.close();
+        }
+    }
+
     private static class SimpleSCMSourceObserver extends SCMSourceObserver {
         Set<String> names = new HashSet<String>();
         LogTaskListener listener =
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ */
+
+package jenkins.scm.impl.trait;
+
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class WildcardMatcherTest {
+
+    private static final String[] RULES = {
+            "*", "", "master", "master fo*", "fo*", "*fo", "*o*", "f*k", "f*o*k", "**", "a*b*c", "f*o*o",
+            "release-* hotfix/*", "*-SNAPSHOT master"
+    };
+
+    private static final String[] NAMES = {
+            "master", "fork", "foo", "fo", "f", "alt", "abc", "abbc", "ac", "aXbYc", "release-1.0", "hotfix/a",
+            "hotfix", "1.0-SNAPSHOT", "-SNAPSHOT", "fook", "fk", "fok"
+    };
+
+    /**
+     * The regular expression that the rules used to be translated into.
+     */
+    private static String regex(String rules) {
+        StringBuilder quotedBranches = new StringBuilder();
+        for (String wildcard : rules.split(" ")) {
+            StringBuilder quotedBranch = new StringBuilder();
+            for (String branch : wildcard.split("(?=[*])|(?<=[*])")) {
+                if (branch.equals("*")) {
+                    quotedBranch.append(".*");
+                } else if (!branch.isEmpty()) {
+                    quotedBranch.append(Pattern.quote(branch));
+                }
+            }
+            if (quotedBranches.length() > 0) {
+                quotedBranches.append("|");
+            }
+            quotedBranches.append(quotedBranch);
+        }
+        return quotedBranches.toString();
+    }
+
+    @Test
+    public void given_rules_when_matching_then_sameAsRegex() {
+        for (String rules : RULES) {
+            WildcardMatcher matcher = WildcardMatcher.compile(rules);
+            for (String name : NAMES) {
+                assertThat("'" + rules + "' vs '" + name + "'", matcher.matches(name),
+                        is(Pattern.matches(regex(rules), name)));
+            }
+        }
+    }
+
+    @Test
+    public void given_emptyRules_when_matching_then_nothingMatches() {
+        assertThat(WildcardMatcher.compile("").matches("master"), is(false));
+    }
+
+    @Test
+    public void given_overlappingSegments_when_matching_then_segmentsDoNotOverlap() {
+        assertThat(WildcardMatcher.compile("ab*ba").matches("aba"), is(false));
+        assertThat(WildcardMatcher.compile("ab*ba").matches("abba"), is(true));
+        assertThat(WildcardMatcher.compile("*aa*aa*").matches("aaa"), is(false));
+        assertThat(WildcardMatcher.compile("*aa*aa*").matches("aaaa"), is(true));
+    }
+}
@@ -24,6 +24,7 @@
 
 package jenkins.scm.impl.trait;
 
+import hudson.model.Items;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -100,4 +101,25 @@ public class WildcardSCMHeadFilterTraitTest {
             c.close();
         }
     }
+
+    @Test
+    public void given_deserializedTrait_when_scanning_then_ruleApplied() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            c.createBranch("foo", "fork");
+            c.createBranch("foo", "alt");
+            WildcardSCMHeadFilterTrait trait = (WildcardSCMHeadFilterTrait) Items.XSTREAM2.fromXML(
+                    Items.XSTREAM2.toXML(new WildcardSCMHeadFilterTrait("master fo*", "")));
+            MockSCMSource src = new MockSCMSource(c, "foo", new MockSCMDiscoverBranches(), trait);
+            Map<SCMHead, SCMRevision> result = src.fetch(null, SCMHeadObserver.collect(), null, null).result();
+            Set<String> names = new TreeSet<String>();
+            for (SCMHead h: result.keySet()) {
+                names.add(h.getName());
+            }
+            assertThat(names, containsInAnyOrder("master", "fork"));
+        } finally {
+            c.close();
+        }
+    }
 }
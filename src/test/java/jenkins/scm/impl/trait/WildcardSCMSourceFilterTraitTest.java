@@ -26,6 +26,7 @@ package jenkins.scm.impl.trait;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.model.Items;
 import hudson.model.TaskListener;
 import hudson.util.LogTaskListener;
 import java.io.IOException;
@@ -97,6 +98,59 @@ public class WildcardSCMSourceFilterTraitTest {
         }
     }
 
+    @Test
+    public void given_navigatorWithWildcardRuleContainingRegexCharacters_when_scanning_then_literalMatch()
+            throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo.bar");
+            c.createRepository("fooxbar");
+            c.createRepository("baz+");
+            c.createRepository("bazz");
+            final MockSCMNavigator src = new MockSCMNavigator(c, new WildcardSCMSourceFilterTrait("foo.* baz+", ""));
+            SimpleSCMSourceObserver observer = new SimpleSCMSourceObserver();
+            src.visitSources(observer);
+            assertThat(observer.getNames(), containsInAnyOrder("foo.bar", "baz+"));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void given_navigatorWithBlankIncludes_when_scanning_then_allButExcludedIncluded() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            c.createRepository("bar");
+            c.createRepository("manchu");
+            final MockSCMNavigator src = new MockSCMNavigator(c, new WildcardSCMSourceFilterTrait(" ", "manchu"));
+            SimpleSCMSourceObserver observer = new SimpleSCMSourceObserver();
+            src.visitSources(observer);
+            assertThat(observer.getNames(), containsInAnyOrder("foo", "bar"));
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void given_deserializedTrait_when_scanning_then_ruleApplied() throws Exception {
+        MockSCMController c = MockSCMController.create();
+        try {
+            c.createRepository("foo");
+            c.createRepository("fu");
+            c.createRepository("bar");
+            c.createRepository("manchu");
+            WildcardSCMSourceFilterTrait trait = (WildcardSCMSourceFilterTrait) Items.XSTREAM2.fromXML(
+                    Items.XSTREAM2.toXML(new WildcardSCMSourceFilterTrait("f* bar", "fo*")));
+            final MockSCMNavigator src = new MockSCMNavigator(c, trait);
+            SimpleSCMSourceObserver observer = new SimpleSCMSourceObserver();
+            src.visitSources(observer);
+            assertThat(observer.getNames(), containsInAnyOrder("bar", "fu"));
+        } finally {
+            c.close();
+        }
+    }
+
     private static class SimpleSCMSourceObserver extends SCMSourceObserver {
         Set<String> names = new HashSet<String>();
         LogTaskListener listener =